@@ -0,0 +1,130 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import io.grpc.stub.CallStreamObserver;
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * A {@link Subscriber} that writes the items of a {@link org.reactivestreams.Publisher}
+ * to a gRPC call (the responses on a server, or the requests on a client), only
+ * requesting more from upstream while the transport is ready to accept them. At most
+ * <code>prefetch</code> items are requested but not yet written, and demand is topped up
+ * when it falls to half of that, or when the transport becomes ready again (see
+ * {@link CallStreamObserver#setOnReadyHandler(Runnable)}). The memory used by a slow
+ * peer is therefore bounded by the prefetch plus the transport buffer. On a server, if
+ * the call is cancelled (e.g. by the client, or because its deadline expired) the
+ * upstream subscription is cancelled, so the publisher stops producing items nobody
+ * will read.
+ * <p>
+ * Must be created during the initial call to the application on a server (i.e. in the
+ * method handler), or in {@link io.grpc.stub.ClientResponseObserver#beforeStart} on a
+ * client, since that is the only time the ready and cancel handlers can be registered.
+ *
+ * @param <T> the type of the items
+ * @author Dave Syer
+ * @since 1.0.0
+ */
+class CallStreamSubscriber<T> implements Subscriber<T> {
+
+	private final CallStreamObserver<T> observer;
+
+	private final int prefetch;
+
+	private final AtomicInteger outstanding = new AtomicInteger();
+
+	private volatile Subscription subscription;
+
+	private volatile boolean cancelled;
+
+	CallStreamSubscriber(CallStreamObserver<T> observer, int prefetch) {
+		this.observer = observer;
+		this.prefetch = Math.max(prefetch, 1);
+		observer.setOnReadyHandler(this::replenish);
+		if (observer instanceof ServerCallStreamObserver<T> server) {
+			server.setOnCancelHandler(this::cancel);
+		}
+	}
+
+	@Override
+	public void onSubscribe(Subscription subscription) {
+		this.subscription = subscription;
+		if (this.cancelled) {
+			subscription.cancel();
+			return;
+		}
+		replenish();
+	}
+
+	@Override
+	public void onNext(T item) {
+		if (this.cancelled) {
+			return;
+		}
+		this.outstanding.decrementAndGet();
+		this.observer.onNext(item);
+		replenish();
+	}
+
+	@Override
+	public void onError(Throwable error) {
+		if (!this.cancelled) {
+			this.observer.onError(error);
+		}
+	}
+
+	@Override
+	public void onComplete() {
+		if (!this.cancelled) {
+			this.observer.onCompleted();
+		}
+	}
+
+	/**
+	 * Stop writing and cancel the upstream subscription.
+	 */
+	void cancel() {
+		this.cancelled = true;
+		Subscription subscription = this.subscription;
+		if (subscription != null) {
+			subscription.cancel();
+		}
+	}
+
+	private void replenish() {
+		Subscription subscription = this.subscription;
+		if (subscription == null || this.cancelled) {
+			return;
+		}
+		while (this.observer.isReady()) {
+			int current = this.outstanding.get();
+			if (current > this.prefetch / 2) {
+				return;
+			}
+			int demand = this.prefetch - current;
+			if (this.outstanding.compareAndSet(current, this.prefetch)) {
+				subscription.request(demand);
+				return;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import io.grpc.ForwardingServerCall.SimpleForwardingServerCall;
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.Status;
+
+/**
+ * An adaptive limit on the number of concurrent calls to a gRPC method, so that a spike
+ * in traffic is shed instead of queueing up and slowing down every call. Calls over the
+ * limit fail fast with {@link Status#RESOURCE_EXHAUSTED}. The limit is adjusted with an
+ * AIMD (additive increase, multiplicative decrease) algorithm: it shrinks by a constant
+ * factor when a call is slower than the latency threshold (or fails with a status that
+ * signals overload), and it grows by one for each window of calls that complete in time
+ * while the limit is being used. It starts at, and never exceeds, the maximum. The
+ * decrease is applied at most once per window (the calls that were in flight when the
+ * limit last changed), so a burst of slow calls that were admitted together only counts
+ * once.
+ * <p>
+ * The latency of a call is the time until its first response (or until it is closed if
+ * there is no response). Calls with streaming requests can take as long as the client
+ * wants before they respond, so they have no latency sample, and only a status that
+ * signals overload reduces the limit.
+ * <p>
+ * The current state is exposed by the getters, so that it can be published as metrics
+ * (e.g. as gauges).
+ *
+ * @author Dave Syer
+ * @since 1.0.0
+ */
+public class ConcurrencyLimiter {
+
+	private static final double BACKOFF = 0.9;
+
+	private final int maxLimit;
+
+	private final long threshold;
+
+	private final LongSupplier clock;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final LongAdder accepted = new LongAdder();
+
+	private final LongAdder rejected = new LongAdder();
+
+	private final LongAdder overloaded = new LongAdder();
+
+	private volatile double limit;
+
+	private volatile long latency;
+
+	private long samples;
+
+	private long window;
+
+	/**
+	 * Create a limiter for a single method.
+	 * @param maxLimit the initial and maximum number of concurrent calls
+	 * @param threshold the latency above which a call is a sign of overload
+	 */
+	public ConcurrencyLimiter(int maxLimit, Duration threshold) {
+		this(maxLimit, threshold, System::nanoTime);
+	}
+
+	ConcurrencyLimiter(int maxLimit, Duration threshold, LongSupplier clock) {
+		if (maxLimit < 1) {
+			throw new IllegalArgumentException("Concurrency limit must be positive: " + maxLimit);
+		}
+		this.maxLimit = maxLimit;
+		this.threshold = threshold.toNanos();
+		this.limit = maxLimit;
+		this.clock = clock;
+	}
+
+	/**
+	 * Wrap a call handler so that each call has to be admitted by this limiter, and is
+	 * released (recording its latency) when it is closed or cancelled.
+	 * @param <I> the request type
+	 * @param <O> the response type
+	 * @param handler the handler to wrap
+	 * @return a handler that applies the limit
+	 */
+	public <I, O> ServerCallHandler<I, O> limit(ServerCallHandler<I, O> handler) {
+		return (call, headers) -> {
+			if (!tryAcquire()) {
+				call.close(Status.RESOURCE_EXHAUSTED.withDescription(
+						"Concurrency limit exceeded for " + call.getMethodDescriptor().getFullMethodName()),
+						new Metadata());
+				return new ServerCall.Listener<>() {
+				};
+			}
+			Sample sample = new Sample(call.getMethodDescriptor().getType());
+			ServerCall.Listener<I> listener;
+			try {
+				listener = handler.startCall(new SimpleForwardingServerCall<I, O>(call) {
+					@Override
+					public void sendMessage(O message) {
+						sample.respond();
+						super.sendMessage(message);
+					}
+
+					@Override
+					public void close(Status status, Metadata trailers) {
+						sample.release(isOverload(status));
+						super.close(status, trailers);
+					}
+				}, headers);
+			}
+			catch (RuntimeException e) {
+				sample.release(false);
+				throw e;
+			}
+			return new SimpleForwardingServerCallListener<I>(listener) {
+				@Override
+				public void onCancel() {
+					sample.release(false);
+					super.onCancel();
+				}
+			};
+		};
+	}
+
+	/**
+	 * Admit a call if there is room for it under the current limit. A call that is
+	 * admitted must be {@link #release(long, boolean) released} when it is finished.
+	 * @return true if the call is admitted
+	 */
+	public boolean tryAcquire() {
+		while (true) {
+			int current = this.inFlight.get();
+			if (current >= (int) this.limit) {
+				this.rejected.increment();
+				return false;
+			}
+			if (this.inFlight.compareAndSet(current, current + 1)) {
+				this.accepted.increment();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Release a call that was admitted, adjusting the limit according to its outcome.
+	 * @param nanos the latency of the call in nanoseconds (negative if there is no
+	 * sample, e.g. for a call with streaming requests)
+	 * @param overload true if the call failed in a way that signals overload
+	 */
+	public void release(long nanos, boolean overload) {
+		int current = this.inFlight.getAndDecrement();
+		synchronized (this) {
+			this.samples++;
+			if (nanos >= 0) {
+				this.latency = this.latency == 0 ? nanos : this.latency + (nanos - this.latency) / 10;
+			}
+			if (overload || nanos > this.threshold) {
+				this.overloaded.increment();
+				if (this.samples >= this.window) {
+					this.limit = Math.max(1, this.limit * BACKOFF);
+					// The other calls in flight were admitted under the old limit
+					this.window = this.samples + current;
+				}
+			}
+			else if (current * 2 >= this.limit) {
+				// Only probe for a higher limit if the current one is being used
+				this.limit = Math.min(this.maxLimit, this.limit + 1 / this.limit);
+			}
+		}
+	}
+
+	/**
+	 * The state of a single call, so that it is released exactly once.
+	 */
+	private final class Sample {
+
+		private final long start = ConcurrencyLimiter.this.clock.getAsLong();
+
+		private final boolean timed;
+
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private volatile long latency = -1;
+
+		Sample(MethodType type) {
+			// A call with streaming requests responds when the client is done
+			this.timed = type.clientSendsOneMessage();
+		}
+
+		void respond() {
+			if (this.timed && this.latency < 0) {
+				this.latency = elapsed();
+			}
+		}
+
+		void release(boolean overload) {
+			if (this.released.compareAndSet(false, true)) {
+				long nanos = this.latency;
+				if (this.timed && nanos < 0) {
+					nanos = elapsed();
+				}
+				ConcurrencyLimiter.this.release(nanos, overload);
+			}
+		}
+
+		private long elapsed() {
+			return Math.max(ConcurrencyLimiter.this.clock.getAsLong() - this.start, 0);
+		}
+
+	}
+
+	private static boolean isOverload(Status status) {
+		switch (status.getCode()) {
+			case RESOURCE_EXHAUSTED:
+			case UNAVAILABLE:
+			case DEADLINE_EXCEEDED:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * The current limit on the number of concurrent calls.
+	 */
+	public int getLimit() {
+		return (int) this.limit;
+	}
+
+	/**
+	 * The maximum (and initial) limit.
+	 */
+	public int getMaxLimit() {
+		return this.maxLimit;
+	}
+
+	/**
+	 * The number of calls that are currently in flight.
+	 */
+	public int getInFlight() {
+		return this.inFlight.get();
+	}
+
+	/**
+	 * The total number of calls that were admitted.
+	 */
+	public long getAccepted() {
+		return this.accepted.sum();
+	}
+
+	/**
+	 * The total number of calls that were rejected because the limit was reached.
+	 */
+	public long getRejected() {
+		return this.rejected.sum();
+	}
+
+	/**
+	 * The total number of calls that were too slow, or failed with a status that
+	 * signals overload (at most one of them per window reduces the limit).
+	 */
+	public long getOverloaded() {
+		return this.overloaded.sum();
+	}
+
+	/**
+	 * A moving average of the latency of the calls that were admitted.
+	 */
+	public Duration getLatency() {
+		return Duration.ofNanos(this.latency);
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrencyLimiter [limit=" + getLimit() + ", maxLimit=" + this.maxLimit + ", inFlight="
+				+ getInFlight() + "]";
+	}
+
+}
@@ -0,0 +1,552 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+
+/**
+ * An immutable, pre-resolved plan for converting between a Java type and a protobuf
+ * message with a given {@link Descriptor}. All the introspection (property descriptors,
+ * field lookups by name, accessibility checks) happens once when the plan is created, so
+ * that the conversion itself only has to walk a list of fields and invoke method handles.
+ * <p>
+ * If the plan is created with generated accessors, each getter, setter and constructor is
+ * bound to a class spun by {@link GeneratedAccessors} where possible, and the method
+ * handles are only used as a fallback.
+ *
+ * @author Dave Syer
+ * @since 1.0.0
+ */
+final class ConversionPlan {
+
+	private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+	private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private static final MethodType CONSTRUCTOR = MethodType.methodType(Object.class);
+
+	private static final MethodType CANONICAL_CONSTRUCTOR = MethodType.methodType(Object.class, Object[].class);
+
+	private static final int MAX_INDEXED_NUMBER = 1024;
+
+	private final Class<?> type;
+
+	private final Descriptor descriptor;
+
+	private final MethodHandle constructor;
+
+	private final Supplier<Object> instantiator;
+
+	private final List<FieldPlan> fields;
+
+	private final FieldPlan[] numbers;
+
+	private final Object[] arguments;
+
+	private final Map<Method, FieldPlan> accessors = new HashMap<>();
+
+	private ConversionPlan(Class<?> type, Descriptor descriptor, MethodHandle constructor,
+			Supplier<Object> instantiator, List<FieldPlan> fields, Object[] arguments) {
+		this.type = type;
+		this.descriptor = descriptor;
+		this.constructor = constructor;
+		this.instantiator = instantiator;
+		this.fields = fields;
+		this.arguments = arguments;
+		int max = fields.isEmpty() ? 0 : fields.get(fields.size() - 1).field().getNumber();
+		// Sparse (or very large) field numbers fall back to a linear search
+		this.numbers = max <= MAX_INDEXED_NUMBER ? new FieldPlan[max + 1] : null;
+		if (this.numbers != null) {
+			for (FieldPlan field : fields) {
+				this.numbers[field.field().getNumber()] = field;
+			}
+		}
+		for (FieldPlan field : fields) {
+			if (field.readMethod() != null) {
+				this.accessors.put(field.readMethod(), field);
+			}
+		}
+	}
+
+	static ConversionPlan create(Class<?> type, Descriptor descriptor, boolean generated) {
+		RecordComponent[] components = type.isRecord() ? type.getRecordComponents() : null;
+		Map<String, Integer> slots = new HashMap<>();
+		if (components != null) {
+			for (int i = 0; i < components.length; i++) {
+				slots.put(components[i].getName(), i);
+			}
+		}
+		List<FieldPlan> fields = new ArrayList<>();
+		for (PropertyDescriptor property : BeanUtils.getPropertyDescriptors(type)) {
+			FieldDescriptor field = descriptor.findFieldByName(property.getName());
+			if (field == null) {
+				continue;
+			}
+			FieldPlan plan = FieldPlan.create(field, property, slots.getOrDefault(property.getName(), -1),
+					generated);
+			if (plan != null) {
+				fields.add(plan);
+			}
+		}
+		// Field number order, so that the wire format is canonical
+		fields.sort(Comparator.comparingInt(plan -> plan.field().getNumber()));
+		if (components != null) {
+			return new ConversionPlan(type, descriptor, canonical(type, components), null,
+					Collections.unmodifiableList(fields), defaults(components));
+		}
+		Constructor<?> constructor = constructor(type);
+		Supplier<Object> instantiator = generated ? GeneratedAccessors.constructor(constructor) : null;
+		return new ConversionPlan(type, descriptor, handle(constructor), instantiator,
+				Collections.unmodifiableList(fields), null);
+	}
+
+	Class<?> type() {
+		return this.type;
+	}
+
+	Descriptor descriptor() {
+		return this.descriptor;
+	}
+
+	List<FieldPlan> fields() {
+		return this.fields;
+	}
+
+	/**
+	 * The plan for the field with the given number, or <code>null</code> if there is no
+	 * such field (or it does not map onto a property of the target type).
+	 */
+	FieldPlan field(int number) {
+		if (this.numbers != null) {
+			return number < this.numbers.length ? this.numbers[number] : null;
+		}
+		for (FieldPlan field : this.fields) {
+			if (field.field().getNumber() == number) {
+				return field;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The plan for the field that is read by the given accessor method, or
+	 * <code>null</code> if there is none.
+	 */
+	FieldPlan accessor(Method method) {
+		return this.accessors.get(method);
+	}
+
+	/**
+	 * Create a target for the fields of a message to be set on. For a record this is an
+	 * array of arguments for its canonical constructor (initialized with default values
+	 * for primitives), otherwise it is a new instance of the type. The result should be
+	 * passed to {@link #build(Object)} once all the fields have been set.
+	 */
+	Object newTarget() {
+		if (this.arguments != null) {
+			return this.arguments.clone();
+		}
+		if (this.instantiator != null) {
+			return this.instantiator.get();
+		}
+		if (this.constructor == null) {
+			throw new IllegalStateException("No default constructor found for " + this.type);
+		}
+		try {
+			return (Object) this.constructor.invokeExact();
+		}
+		catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Finish the construction of an object from a target created by
+	 * {@link #newTarget()}, so that a record is created in a single invocation of its
+	 * canonical constructor.
+	 */
+	Object build(Object target) {
+		if (this.arguments == null) {
+			return target;
+		}
+		try {
+			return (Object) this.constructor.invokeExact((Object[]) target);
+		}
+		catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	private static Constructor<?> constructor(Class<?> type) {
+		if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isPrimitive()
+				|| type.isArray()) {
+			return null;
+		}
+		try {
+			return ReflectionUtils.accessibleConstructor(type);
+		}
+		catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static MethodHandle handle(Constructor<?> constructor) {
+		if (constructor == null) {
+			return null;
+		}
+		try {
+			return MethodHandles.lookup().unreflectConstructor(constructor).asType(CONSTRUCTOR);
+		}
+		catch (IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	private static MethodHandle canonical(Class<?> type, RecordComponent[] components) {
+		Class<?>[] types = new Class<?>[components.length];
+		for (int i = 0; i < components.length; i++) {
+			types[i] = components[i].getType();
+		}
+		try {
+			Constructor<?> constructor = type.getDeclaredConstructor(types);
+			ReflectionUtils.makeAccessible(constructor);
+			return MethodHandles.lookup()
+				.unreflectConstructor(constructor)
+				.asSpreader(Object[].class, types.length)
+				.asType(CANONICAL_CONSTRUCTOR);
+		}
+		catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new IllegalStateException("Cannot access canonical constructor of " + type, e);
+		}
+	}
+
+	private static Object[] defaults(RecordComponent[] components) {
+		Object[] defaults = new Object[components.length];
+		for (int i = 0; i < components.length; i++) {
+			Class<?> type = components[i].getType();
+			if (type.isPrimitive()) {
+				defaults[i] = Array.get(Array.newInstance(type, 1), 0);
+			}
+		}
+		return defaults;
+	}
+
+	static RuntimeException rethrow(Throwable e) {
+		if (e instanceof RuntimeException runtime) {
+			return runtime;
+		}
+		if (e instanceof Error error) {
+			throw error;
+		}
+		return new IllegalStateException(e);
+	}
+
+	enum Kind {
+
+		/**
+		 * A single scalar value that can be copied as is.
+		 */
+		SCALAR,
+
+		/**
+		 * A single nested message.
+		 */
+		MESSAGE,
+
+		/**
+		 * A repeated field backed by a {@link Collection}.
+		 */
+		LIST,
+
+		/**
+		 * A map field (repeated map entries in protobuf).
+		 */
+		MAP,
+
+		/**
+		 * A repeated scalar field backed by an array of primitives.
+		 */
+		ARRAY
+
+	}
+
+	/**
+	 * Pre-resolved accessors and metadata for a single property that maps to a field in
+	 * the target message.
+	 */
+	static final class FieldPlan {
+
+		private final FieldDescriptor field;
+
+		private final Kind kind;
+
+		private final Class<?> type;
+
+		private final Class<?> elementType;
+
+		private final FieldDescriptor key;
+
+		private final FieldDescriptor value;
+
+		private final MethodHandle getter;
+
+		private final MethodHandle setter;
+
+		private final Function<Object, Object> reader;
+
+		private final BiConsumer<Object, Object> writer;
+
+		private final int slot;
+
+		private final Method readMethod;
+
+		private FieldPlan(FieldDescriptor field, Kind kind, Class<?> type, Class<?> elementType, Method getter,
+				Method setter, int slot, boolean generated) {
+			this.field = field;
+			this.kind = kind;
+			this.type = type;
+			this.elementType = elementType;
+			this.slot = slot;
+			this.readMethod = getter;
+			this.getter = handle(getter, GETTER);
+			this.setter = handle(setter, SETTER);
+			this.reader = generated ? GeneratedAccessors.getter(getter) : null;
+			this.writer = generated ? GeneratedAccessors.setter(setter) : null;
+			if (kind == Kind.MAP) {
+				Descriptor entry = field.getMessageType();
+				this.key = entry.findFieldByName("key");
+				this.value = entry.findFieldByName("value");
+			}
+			else {
+				this.key = null;
+				this.value = null;
+			}
+		}
+
+		/**
+		 * Create a plan for the given field and property, or return <code>null</code> if
+		 * the property cannot be mapped onto the field. A non-negative slot is the index
+		 * of the property in the arguments of a record's canonical constructor.
+		 */
+		static FieldPlan create(FieldDescriptor field, PropertyDescriptor property, int slot, boolean generated) {
+			Class<?> type = property.getPropertyType();
+			Method read = property.getReadMethod();
+			java.lang.reflect.Type generic = read != null ? read.getGenericReturnType() : type;
+			Kind kind;
+			Class<?> elementType = null;
+			if (field.isMapField() && Map.class.isAssignableFrom(type)) {
+				kind = Kind.MAP;
+				elementType = genericType(generic, 1);
+			}
+			else if (field.isRepeated() && Collection.class.isAssignableFrom(type)) {
+				kind = Kind.LIST;
+				elementType = genericType(generic, 0);
+			}
+			else if (field.isRepeated() && type.isArray() && type.getComponentType().isPrimitive()
+					&& field.isPackable()) {
+				kind = Kind.ARRAY;
+				elementType = type.getComponentType();
+				if (!supports(elementType, field.getType())) {
+					throw new IllegalArgumentException("Cannot map " + type.getSimpleName() + " property '"
+							+ property.getName() + "' onto field '" + field.getFullName() + "' of type "
+							+ field.getType());
+				}
+			}
+			else if (field.isRepeated()) {
+				// Not (yet) a supported shape for a repeated field
+				return null;
+			}
+			else if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+				kind = Kind.MESSAGE;
+				elementType = type;
+			}
+			else {
+				kind = Kind.SCALAR;
+			}
+			return new FieldPlan(field, kind, type, elementType, read, property.getWriteMethod(), slot, generated);
+		}
+
+		FieldDescriptor field() {
+			return this.field;
+		}
+
+		Kind kind() {
+			return this.kind;
+		}
+
+		Class<?> type() {
+			return this.type;
+		}
+
+		/**
+		 * The Java type of the elements of a collection or array, the values of a map, or
+		 * the nested message type (may be <code>null</code> if it cannot be resolved).
+		 */
+		Class<?> elementType() {
+			return this.elementType;
+		}
+
+		FieldDescriptor key() {
+			return this.key;
+		}
+
+		FieldDescriptor value() {
+			return this.value;
+		}
+
+		Method readMethod() {
+			return this.readMethod;
+		}
+
+		boolean readable() {
+			return this.getter != null;
+		}
+
+		boolean writable() {
+			return this.slot >= 0 || this.setter != null;
+		}
+
+		/**
+		 * Whether the accessors of the property (where it has them) are bound to
+		 * generated classes instead of being invoked reflectively.
+		 */
+		boolean generated() {
+			return (this.getter == null || this.reader != null) && (this.setter == null || this.writer != null);
+		}
+
+		Object get(Object target) {
+			if (this.reader != null) {
+				return this.reader.apply(target);
+			}
+			try {
+				return (Object) this.getter.invokeExact(target);
+			}
+			catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		/**
+		 * The current value of the field in a target created by
+		 * {@link ConversionPlan#newTarget()}, or <code>null</code> if it cannot be read.
+		 */
+		Object peek(Object target) {
+			if (this.slot >= 0) {
+				return ((Object[]) target)[this.slot];
+			}
+			return readable() ? get(target) : null;
+		}
+
+		/**
+		 * Set the value of the field in a target created by
+		 * {@link ConversionPlan#newTarget()}.
+		 */
+		void set(Object target, Object value) {
+			if (this.slot >= 0) {
+				((Object[]) target)[this.slot] = value;
+				return;
+			}
+			if (this.writer != null) {
+				this.writer.accept(target, value);
+				return;
+			}
+			try {
+				this.setter.invokeExact(target, value);
+			}
+			catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		private static MethodHandle handle(Method method, MethodType type) {
+			if (method == null) {
+				return null;
+			}
+			ReflectionUtils.makeAccessible(method);
+			try {
+				return MethodHandles.lookup().unreflect(method).asType(type);
+			}
+			catch (IllegalAccessException e) {
+				throw new IllegalStateException("Cannot access " + method, e);
+			}
+		}
+
+		/**
+		 * Whether the elements of a primitive array are exactly the Java type of the
+		 * values of the field (as in a {@link com.google.protobuf.DynamicMessage}), so
+		 * that they can be read and written without any conversion.
+		 */
+		private static boolean supports(Class<?> elementType, FieldDescriptor.Type type) {
+			switch (type) {
+				case DOUBLE:
+					return elementType == double.class;
+				case FLOAT:
+					return elementType == float.class;
+				case BOOL:
+					return elementType == boolean.class;
+				case INT32:
+				case UINT32:
+				case SINT32:
+				case FIXED32:
+				case SFIXED32:
+					return elementType == int.class;
+				case INT64:
+				case UINT64:
+				case SINT64:
+				case FIXED64:
+				case SFIXED64:
+					return elementType == long.class;
+				default:
+					return false;
+			}
+		}
+
+		private static Class<?> genericType(java.lang.reflect.Type type, int index) {
+			if (type instanceof ParameterizedType param && param.getActualTypeArguments().length > index
+					&& param.getActualTypeArguments()[index] instanceof Class<?> result) {
+				return result;
+			}
+			return null;
+		}
+
+	}
+
+}
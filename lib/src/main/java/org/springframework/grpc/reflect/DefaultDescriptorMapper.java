@@ -0,0 +1,518 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.annotation.OrderUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto.Type;
+import com.google.protobuf.DescriptorProtos.FieldOptions;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.DescriptorValidationException;
+import com.google.protobuf.Descriptors.FileDescriptor;
+
+/**
+ * Default {@link DescriptorMapper} that introspects the properties of a class (in
+ * declaration order, or as specified by {@link org.springframework.core.annotation.Order
+ * &#64;Order} on the fields) and creates a message type with a field for each one. The
+ * message types of nested properties are mapped recursively, and cycles are mapped into a
+ * single file. A batch of classes (e.g. all the message types of a service) can be mapped
+ * into a single file with {@link #descriptors(Collection)}, which saves building and
+ * validating a separate file for each class graph.
+ * <p>
+ * Instances are safe to use from multiple threads. Descriptors that have already been
+ * computed are read without locking, and the graph of types reachable from a new class
+ * is built under a single lock, so that each class is only ever mapped once, even if
+ * several services are registered in parallel. If a {@link PersistentDescriptorCache} is
+ * provided, the introspection of each class is stored in it and reused on subsequent
+ * runs for as long as the class is unchanged.
+ *
+ * @author Dave Syer
+ * @since 1.0.0
+ */
+public class DefaultDescriptorMapper implements DescriptorMapper {
+
+	private final Map<Class<?>, Descriptor> cache = new ConcurrentHashMap<>();
+
+	private final Map<Class<?>, ClassMapping> mappings = new ConcurrentHashMap<>();
+
+	// Class graphs can be cyclic, so a lock per class could deadlock
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final PersistentDescriptorCache store;
+
+	public DefaultDescriptorMapper() {
+		this(null);
+	}
+
+	/**
+	 * Create a mapper that stores the result of introspecting each class in the cache
+	 * provided (if not null), and reuses it on a later run if the class has not changed.
+	 * @param store a persistent cache (or null)
+	 */
+	public DefaultDescriptorMapper(PersistentDescriptorCache store) {
+		this.store = store;
+	}
+
+	@Override
+	public Descriptor descriptor(Class<?> clazz) {
+		if (clazz == null) {
+			clazz = Void.class;
+		}
+		Descriptor result = this.cache.get(clazz);
+		if (result != null) {
+			return result;
+		}
+		this.lock.lock();
+		try {
+			result = this.cache.get(clazz);
+			if (result == null) {
+				Set<Class<?>> current = new HashSet<>();
+				FileDescriptorProto.Builder builder = FileDescriptorProto.newBuilder();
+				result = descriptor(clazz, current, builder);
+				this.cache.putIfAbsent(clazz, result);
+			}
+			return result;
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Map all the classes provided, and any new classes reachable from them, into a
+	 * single file, instead of one file per class graph. Classes that were already mapped
+	 * are reused (the new file depends on their files). If the simple names of the new
+	 * classes are not unique, they cannot share a file, so they are mapped one by one
+	 * instead.
+	 */
+	@Override
+	public Map<Class<?>, Descriptor> descriptors(Collection<Class<?>> classes) {
+		this.lock.lock();
+		try {
+			Set<Class<?>> pending = new LinkedHashSet<>();
+			Set<FileDescriptor> dependencies = new LinkedHashSet<>();
+			Deque<Class<?>> queue = new ArrayDeque<>();
+			for (Class<?> clazz : classes) {
+				queue.add(clazz == null ? Void.class : clazz);
+			}
+			while (!queue.isEmpty()) {
+				Class<?> clazz = queue.poll();
+				Descriptor cached = this.cache.get(clazz);
+				if (cached != null) {
+					dependencies.add(cached.getFile());
+				}
+				else if (pending.add(clazz)) {
+					queue.addAll(mapping(clazz).types().values());
+				}
+			}
+			if (!pending.isEmpty() && unique(pending, dependencies)) {
+				FileDescriptorProto.Builder builder = FileDescriptorProto.newBuilder();
+				for (Class<?> clazz : pending) {
+					builder.addMessageType(mapping(clazz).proto());
+				}
+				FileDescriptor file = FileDescriptor.buildFrom(builder.build(),
+						dependencies.toArray(new FileDescriptor[0]));
+				for (Class<?> clazz : pending) {
+					this.cache.put(clazz, file.findMessageTypeByName(mapping(clazz).proto().getName()));
+				}
+			}
+			Map<Class<?>, Descriptor> result = new LinkedHashMap<>();
+			for (Class<?> clazz : classes) {
+				result.put(clazz, descriptor(clazz));
+			}
+			return result;
+		}
+		catch (DescriptorValidationException e) {
+			throw new IllegalStateException(e);
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	private boolean unique(Set<Class<?>> pending, Set<FileDescriptor> dependencies) {
+		Set<String> names = new HashSet<>();
+		for (FileDescriptor file : dependencies) {
+			for (Descriptor type : file.getMessageTypes()) {
+				names.add(type.getName());
+			}
+		}
+		for (Class<?> clazz : pending) {
+			if (!names.add(mapping(clazz).proto().getName())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Descriptor descriptor(Class<?> clazz, Set<Class<?>> current, FileDescriptorProto.Builder builder) {
+		current.add(clazz);
+		if (this.cache.containsKey(clazz)) {
+			return this.cache.get(clazz);
+		}
+		ClassMapping mapping = mapping(clazz);
+		DescriptorProto message = mapping.proto();
+		builder.addMessageType(message);
+		try {
+			Set<FileDescriptor> dependencies = new HashSet<>();
+			for (var field : message.getFieldList()) {
+				Class<?> fieldType = mapping.types().get(field.getName());
+				if (fieldType != null && fieldType != clazz) {
+					if (current.contains(fieldType)) {
+						DescriptorProto proto = mapping(fieldType).proto();
+						if (!builder.getMessageTypeList().contains(proto)) {
+							builder.addMessageType(proto);
+						}
+					}
+					else {
+						Descriptor descriptor = descriptor(fieldType, current, builder);
+						this.cache.put(fieldType, descriptor);
+						dependencies.add(descriptor.getFile());
+					}
+				}
+			}
+			if (this.cache.containsKey(clazz)) {
+				current.remove(clazz);
+				return this.cache.get(clazz);
+			}
+			FileDescriptor proto = FileDescriptor.buildFrom(builder.build(),
+					dependencies.toArray(new FileDescriptor[0]));
+			for (Class<?> other : new HashSet<>(current)) {
+				Descriptor maybe = proto.findMessageTypeByName(other.getSimpleName());
+				if (maybe != null) {
+					this.cache.put(other, maybe);
+				}
+			}
+			return proto.findMessageTypeByName(message.getName());
+		}
+		catch (DescriptorValidationException e) {
+			throw new IllegalStateException(e);
+		}
+
+	}
+
+	private ClassMapping mapping(Class<?> clazz) {
+		ClassMapping mapping = this.mappings.get(clazz);
+		if (mapping != null) {
+			return mapping;
+		}
+		if (this.store != null) {
+			mapping = this.store.load(clazz);
+		}
+		if (mapping == null) {
+			DescriptorProto proto = proto(clazz);
+			mapping = new ClassMapping(proto, types(clazz, proto));
+			if (this.store != null) {
+				this.store.save(clazz, mapping);
+			}
+		}
+		this.mappings.put(clazz, mapping);
+		return mapping;
+	}
+
+	/**
+	 * The classes that need to be mapped to the message types of the fields in the proto
+	 * (so the element type for collections and the value type for maps), keyed by field
+	 * name.
+	 */
+	private Map<String, Class<?>> types(Class<?> clazz, DescriptorProto message) {
+		Map<String, Class<?>> types = new LinkedHashMap<>();
+		for (var field : message.getFieldList()) {
+			if (field.getType() != FieldDescriptorProto.Type.TYPE_MESSAGE) {
+				continue;
+			}
+			PropertyDescriptor property = BeanUtils.getPropertyDescriptor(clazz, field.getName());
+			Class<?> fieldType = property.getReadMethod().getReturnType();
+			Class<?> valueType = fieldType;
+			if (Map.class.isAssignableFrom(fieldType)) {
+				valueType = findGenericType(property.getReadMethod().getGenericReturnType(), 1);
+			}
+			else if (Iterable.class.isAssignableFrom(fieldType)) {
+				valueType = findGenericType(property.getReadMethod().getGenericReturnType(), 0);
+			}
+			else if (fieldType.isArray()) {
+				valueType = fieldType.getComponentType();
+			}
+			if (valueType != fieldType) {
+				Type type = findType(valueType, null);
+				if (type != Type.TYPE_MESSAGE && type != Type.TYPE_ENUM) {
+					continue;
+				}
+			}
+			types.put(field.getName(), valueType);
+		}
+		return types;
+	}
+
+	private DescriptorProto proto(Class<?> clazz) {
+		DescriptorProto.Builder builder = DescriptorProto.newBuilder();
+		builder.setName(clazz.getSimpleName());
+		if (clazz == Void.class || clazz == Void.TYPE) {
+			return builder.build();
+		}
+		Map<Integer, PropertyDescriptor> properties = orderedProperties(clazz);
+		for (Integer count : properties.keySet()) {
+			PropertyDescriptor property = properties.get(count);
+			Class<?> fieldType = property.getReadMethod().getReturnType();
+			Type type = findType(fieldType, property.getReadMethod().getGenericReturnType());
+			DescriptorProtos.FieldDescriptorProto.Builder fb = DescriptorProtos.FieldDescriptorProto.newBuilder()
+				.setName(property.getName())
+				.setNumber(count)
+				.setType(type);
+			if (type == Type.TYPE_MESSAGE) {
+				if (Map.class.isAssignableFrom(fieldType)) {
+					String mapTypeName = StringUtils.capitalize(property.getName()) + "Entry";
+					fb.setTypeName(mapTypeName);
+					builder.addNestedType(mapType(mapTypeName, property));
+				}
+				else if (Iterable.class.isAssignableFrom(fieldType)) {
+					fb.setTypeName(findGenericTypeName(property.getReadMethod().getGenericReturnType(), 0));
+				}
+				else if (fieldType.isArray()) {
+					fb.setTypeName(fieldType.getComponentType().getSimpleName());
+				}
+				else {
+					fb.setTypeName(fieldType.getSimpleName());
+				}
+			}
+			if ((fieldType.isArray() && type != Type.TYPE_BYTES) || Iterable.class.isAssignableFrom(fieldType)
+					|| Map.class.isAssignableFrom(fieldType)) {
+				fb.setLabel(DescriptorProtos.FieldDescriptorProto.Label.LABEL_REPEATED);
+			}
+			if (fieldType.isArray() && fieldType.getComponentType().isPrimitive() && type != Type.TYPE_BYTES) {
+				// Primitive arrays are always packed (no boxing and a compact encoding)
+				fb.setOptions(FieldOptions.newBuilder().setPacked(true));
+			}
+			builder.addField(fb.build());
+			count++;
+		}
+		return builder.build();
+	}
+
+	private Map<Integer, PropertyDescriptor> orderedProperties(Class<?> clazz) {
+		Map<Integer, PropertyDescriptor> orders = new TreeMap<>();
+		Map<Integer, PropertyDescriptor> declarations = declarationOrder(clazz);
+		for (Integer order : declarations.keySet()) {
+			PropertyDescriptor property = declarations.get(order);
+			Field field = ReflectionUtils.findField(clazz, property.getName());
+			if (field == null) {
+				continue;
+			}
+			ReflectionUtils.makeAccessible(field);
+			Integer maybe = OrderUtils.getOrder(field);
+			if (maybe != null) {
+				orders.put(maybe, property);
+			}
+			else {
+				orders.put(order, property);
+			}
+		}
+		// Not an error if the explicit orders leave gaps
+		if (orders.size() != declarations.size()) {
+			// Some properties were not assigned an order
+			throw new IllegalStateException("Some properties were assigned a duplicate order in " + clazz);
+		}
+		return orders;
+	}
+
+	private Map<Integer, PropertyDescriptor> declarationOrder(Class<?> clazz) {
+		PropertyDescriptor[] properties = BeanUtils.getPropertyDescriptors(clazz);
+		Map<String, PropertyDescriptor> map = new HashMap<>();
+		for (PropertyDescriptor property : properties) {
+			Class<?> fieldType = property.getReadMethod() != null ? property.getReadMethod().getReturnType() : null;
+			if (fieldType == null || fieldType == Class.class) {
+				continue;
+			}
+			map.put(property.getName(), property);
+		}
+
+		Map<Integer, PropertyDescriptor> orders = new HashMap<>();
+		if (clazz.isRecord()) {
+			int i = 1;
+			for (RecordComponent component : clazz.getRecordComponents()) {
+				if (map.containsKey(component.getName())) {
+					orders.put(i++, map.get(component.getName()));
+				}
+			}
+			return orders;
+		}
+		Map<String, Class<?>> owners = new HashMap<>();
+		for (PropertyDescriptor property : map.values()) {
+			Field field = ReflectionUtils.findField(clazz, property.getName());
+			owners.put(property.getName(), field.getDeclaringClass());
+		}
+		Class<?> current = clazz;
+		List<Class<?>> classes = new ArrayList<>();
+		while (current != null && current != Object.class) {
+			classes.add(current);
+			current = current.getSuperclass();
+		}
+		// Sort fields by declaration order with superclasses first
+		int count = 1;
+		Collections.reverse(classes);
+		for (Class<?> owner : classes) {
+			// Order of declaration is not defined in Java reflection, but it
+			// usually works the way you expect anyway, at least for openjdk.
+			for (Field field : owner.getDeclaredFields()) {
+				if (owners.containsKey(field.getName())) {
+					orders.put(count, map.get(field.getName()));
+					count++;
+				}
+			}
+		}
+		return orders;
+	}
+
+	private static DescriptorProtos.FieldDescriptorProto.Type findType(Class<?> type,
+			java.lang.reflect.Type genericType) {
+		if (type == null) {
+			return null; // or MESSAGE?
+		}
+		if (type == byte[].class) {
+			return DescriptorProtos.FieldDescriptorProto.Type.TYPE_BYTES;
+		}
+		if (type.isArray()) {
+			type = type.getComponentType();
+		}
+		if (Iterable.class.isAssignableFrom(type)) {
+			if (genericType instanceof ParameterizedType param) {
+				param.getActualTypeArguments();
+				if (param.getActualTypeArguments().length > 0) {
+					type = (Class<?>) param.getActualTypeArguments()[0];
+				}
+			}
+		}
+		if (Map.class.isAssignableFrom(type)) {
+			return DescriptorProtos.FieldDescriptorProto.Type.TYPE_MESSAGE;
+		}
+		if (type == String.class) {
+			return DescriptorProtos.FieldDescriptorProto.Type.TYPE_STRING;
+		}
+		else if (type == float.class || type == Float.class) {
+			return DescriptorProtos.FieldDescriptorProto.Type.TYPE_FLOAT;
+		}
+		else if (type == double.class || type == Double.class) {
+			return DescriptorProtos.FieldDescriptorProto.Type.TYPE_DOUBLE;
+		}
+		else if (type == int.class || type == Integer.class) {
+			return DescriptorProtos.FieldDescriptorProto.Type.TYPE_INT32;
+		}
+		else if (type == long.class || type == Long.class) {
+			return DescriptorProtos.FieldDescriptorProto.Type.TYPE_INT64;
+		}
+		else if (type == boolean.class || type == Boolean.class) {
+			return DescriptorProtos.FieldDescriptorProto.Type.TYPE_BOOL;
+		}
+		else if (type.isEnum()) {
+			return DescriptorProtos.FieldDescriptorProto.Type.TYPE_ENUM;
+		}
+		return DescriptorProtos.FieldDescriptorProto.Type.TYPE_MESSAGE;
+	}
+
+	static DescriptorProto mapType(String name, PropertyDescriptor field) {
+		DescriptorProto.Builder type = DescriptorProto.newBuilder().setName(name);
+		FieldDescriptorProto.Builder key = FieldDescriptorProto.newBuilder()
+			.setName("key")
+			.setNumber(1)
+			.setType(findKeyType(field.getReadMethod().getGenericReturnType()));
+		FieldDescriptorProto.Builder value = FieldDescriptorProto.newBuilder()
+			.setName("value")
+			.setNumber(2)
+			.setType(findValueType(field.getReadMethod().getGenericReturnType()));
+		if (value.getType() == FieldDescriptorProto.Type.TYPE_MESSAGE
+				|| value.getType() == FieldDescriptorProto.Type.TYPE_ENUM) {
+			value.setTypeName(findGenericTypeName(field.getReadMethod().getGenericReturnType(), 1));
+		}
+		type.setOptions(type.getOptionsBuilder().setMapEntry(true));
+		type.addField(key.build());
+		type.addField(value.build());
+		return type.build();
+	}
+
+	static Class<?> findGenericType(java.lang.reflect.Type genericType, int index) {
+		if (genericType instanceof ParameterizedType param) {
+			if (param.getActualTypeArguments().length > index) {
+				Class<?> keyType = (Class<?>) param.getActualTypeArguments()[index];
+				return keyType;
+			}
+		}
+		throw new UnsupportedOperationException("Unsupported generic value type: " + genericType);
+	}
+
+	static String findGenericTypeName(java.lang.reflect.Type genericType, int index) {
+		return findGenericType(genericType, index).getSimpleName();
+	}
+
+	static Type findKeyType(java.lang.reflect.Type genericType) {
+		if (genericType instanceof ParameterizedType param) {
+			if (param.getActualTypeArguments().length > 0) {
+				Class<?> keyType = (Class<?>) param.getActualTypeArguments()[0];
+				Type type = findType(keyType, null);
+				if (type != Type.TYPE_MESSAGE && type != Type.TYPE_ENUM) {
+					// Keys in protobuf maps cannot be messages or enums
+					return type;
+				}
+			}
+		}
+		throw new UnsupportedOperationException("Unsupported map key type: " + genericType);
+	}
+
+	static Type findValueType(java.lang.reflect.Type genericType) {
+		if (genericType instanceof ParameterizedType param) {
+			if (param.getActualTypeArguments().length > 1) {
+				Class<?> keyType = (Class<?>) param.getActualTypeArguments()[1];
+				Type type = findType(keyType, null);
+				return type;
+			}
+		}
+		throw new UnsupportedOperationException("Unsupported map value type: " + genericType);
+	}
+
+	/**
+	 * The result of introspecting a class: the message proto and the classes of its
+	 * message fields.
+	 */
+	record ClassMapping(DescriptorProto proto, Map<String, Class<?>> types) {
+	}
+
+}
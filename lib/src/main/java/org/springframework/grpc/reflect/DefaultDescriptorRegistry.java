@@ -15,24 +15,40 @@
  */
 package org.springframework.grpc.reflect;
 
-import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-
-import org.springframework.beans.BeanUtils;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.Descriptors.FileDescriptor;
 import com.google.protobuf.Descriptors.MethodDescriptor;
 import com.google.protobuf.Descriptors.ServiceDescriptor;
+import com.google.protobuf.Message;
+
+import io.grpc.MethodDescriptor.MethodType;
 
 /**
  * Registrar for managing protocol buffer file descriptors in the application context.
  * <p>
  * This class handles the registration and management of gRPC service descriptors to
  * supply descriptor information for reflection and dynamic service operations.
+ * <p>
+ * Lookups are lock-free: the method mappings are published as an immutable snapshot
+ * through a single volatile reference, and registration (which is rare) swaps in a new
+ * snapshot while holding a lock.
+ * <p>
+ * In strict mode, {@link #validate(String, Class, Class) validation} compares the schema
+ * of each message with the descriptor that the {@link DescriptorMapper} derives from the
+ * Java type, and the result is cached for each pair, so types that are shared between
+ * methods are only checked once.
  *
  * @author Dave Syer
  * @since 1.0.0
@@ -41,11 +57,17 @@ public class DefaultDescriptorRegistry implements DescriptorProvider, Descriptor
 
 	private final DescriptorCatalog catalog;
 
-	private final ReflectionFileDescriptorProvider reflection = new ReflectionFileDescriptorProvider();
+	private final ReflectionFileDescriptorProvider reflection;
+
+	private final DescriptorMapper mapper;
 
-	private Map<String, DescriptorMapping> inputs = new HashMap<>();
+	private final Map<Validation, String> validations = new ConcurrentHashMap<>();
 
-	private Map<String, DescriptorMapping> outputs = new HashMap<>();
+	private final Object monitor = new Object();
+
+	private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), Set.of());
+
+	private Map<String, Map<String, Pending>> pending = new HashMap<>();
 
 	private boolean strict = true;
 
@@ -54,75 +76,197 @@ public class DefaultDescriptorRegistry implements DescriptorProvider, Descriptor
 	}
 
 	public DefaultDescriptorRegistry(DescriptorCatalog catalog) {
+		this(catalog, DescriptorMapper.DEFAULT_INSTANCE);
+	}
+
+	public DefaultDescriptorRegistry(DescriptorCatalog catalog, DescriptorMapper mapper) {
 		this.catalog = catalog;
+		this.mapper = mapper;
+		this.reflection = new ReflectionFileDescriptorProvider(mapper);
 	}
 
 	public void setStrict(boolean strict) {
 		this.strict = strict;
 	}
 
-	public <I, O> void unary(String fullMethodName, Class<I> input, Class<O> output) {
-		MethodDescriptor method = findMethod(catalog, fullMethodName);
-		if (method == null) {
-			reflection.unary(fullMethodName, input, output);
-			method = findMethod(reflection, fullMethodName);
+	/**
+	 * Prepare the message types for a service that is not (yet) in the catalog, so that
+	 * they can be mapped in a single batch.
+	 * @param types the message types
+	 */
+	public void prepare(Collection<Class<?>> types) {
+		synchronized (this.monitor) {
+			this.reflection.prepare(types);
 		}
-		register(method, input, output);
+	}
+
+	public <I, O> void unary(String fullMethodName, Class<I> input, Class<O> output) {
+		register(fullMethodName, input, output, MethodType.UNARY);
 	}
 
 	public <I, O> void stream(String fullMethodName, Class<I> input, Class<O> output) {
-		MethodDescriptor method = findMethod(catalog, fullMethodName);
-		if (method == null) {
-			reflection.stream(fullMethodName, input, output);
-			method = findMethod(reflection, fullMethodName);
-		}
-		register(method, input, output);
+		register(fullMethodName, input, output, MethodType.SERVER_STREAMING);
+	}
+
+	public <I, O> void clientStream(String fullMethodName, Class<I> input, Class<O> output) {
+		register(fullMethodName, input, output, MethodType.CLIENT_STREAMING);
 	}
 
 	public <I, O> void bidi(String fullMethodName, Class<I> input, Class<O> output) {
-		MethodDescriptor method = findMethod(catalog, fullMethodName);
-		if (method == null) {
-			reflection.bidi(fullMethodName, input, output);
-			method = findMethod(reflection, fullMethodName);
+		register(fullMethodName, input, output, MethodType.BIDI_STREAMING);
+	}
+
+	private void register(String fullMethodName, Class<?> input, Class<?> output, MethodType methodType) {
+		synchronized (this.monitor) {
+			MethodDescriptor method = findMethod(catalog, fullMethodName);
+			if (method != null) {
+				Map<String, DescriptorMapping> inputs = new HashMap<>();
+				Map<String, DescriptorMapping> outputs = new HashMap<>();
+				register(method, input, output, inputs, outputs);
+				publish(inputs, outputs);
+				return;
+			}
+			switch (methodType) {
+				case SERVER_STREAMING:
+					reflection.stream(fullMethodName, input, output);
+					break;
+				case CLIENT_STREAMING:
+					reflection.clientStream(fullMethodName, input, output);
+					break;
+				case BIDI_STREAMING:
+					reflection.bidi(fullMethodName, input, output);
+					break;
+				default:
+					reflection.unary(fullMethodName, input, output);
+			}
+			defer(fullMethodName, input, output);
 		}
-		register(method, input, output);
+	}
+
+	/**
+	 * Methods that are derived by reflection are registered in the catalog lazily, when
+	 * they (or their service) are first looked up, so that the file for the service is
+	 * only built once, however many methods it has.
+	 */
+	private void defer(String fullMethodName, Class<?> input, Class<?> output) {
+		this.pending.computeIfAbsent(serviceName(fullMethodName), key -> new LinkedHashMap<>())
+			.put(fullMethodName, new Pending(input, output));
+		publish(Map.of(), Map.of());
+	}
+
+	private void resolve(String serviceName) {
+		Map<String, Pending> methods = this.pending.remove(serviceName);
+		if (methods == null) {
+			return;
+		}
+		Map<String, DescriptorMapping> inputs = new HashMap<>();
+		Map<String, DescriptorMapping> outputs = new HashMap<>();
+		for (Map.Entry<String, Pending> entry : methods.entrySet()) {
+			Pending method = entry.getValue();
+			register(findMethod(this.reflection, entry.getKey()), method.input(), method.output(), inputs, outputs);
+		}
+		publish(inputs, outputs);
+	}
+
+	private void resolve() {
+		for (String serviceName : new ArrayList<>(this.pending.keySet())) {
+			resolve(serviceName);
+		}
+	}
+
+	private void resolveMethod(String fullMethodName) {
+		Map<String, Pending> methods = this.pending.get(serviceName(fullMethodName));
+		if (methods != null && methods.containsKey(fullMethodName)) {
+			resolve(serviceName(fullMethodName));
+		}
+	}
+
+	/**
+	 * Swap in a new snapshot with the mappings provided added to the current ones. Must
+	 * be called while holding the monitor.
+	 */
+	private void publish(Map<String, DescriptorMapping> inputs, Map<String, DescriptorMapping> outputs) {
+		Snapshot current = this.snapshot;
+		Map<String, DescriptorMapping> newInputs = current.inputs();
+		if (!inputs.isEmpty()) {
+			newInputs = new HashMap<>(newInputs);
+			newInputs.putAll(inputs);
+			newInputs = Map.copyOf(newInputs);
+		}
+		Map<String, DescriptorMapping> newOutputs = current.outputs();
+		if (!outputs.isEmpty()) {
+			newOutputs = new HashMap<>(newOutputs);
+			newOutputs.putAll(outputs);
+			newOutputs = Map.copyOf(newOutputs);
+		}
+		this.snapshot = new Snapshot(newInputs, newOutputs, Set.copyOf(this.pending.keySet()));
+	}
+
+	private static String serviceName(String fullMethodName) {
+		return fullMethodName.substring(0, fullMethodName.lastIndexOf('/'));
 	}
 
 	public DescriptorMapping input(String fullMethodName) {
-		return this.inputs.get(fullMethodName);
+		DescriptorMapping mapping = this.snapshot.inputs().get(fullMethodName);
+		if (mapping != null) {
+			return mapping;
+		}
+		synchronized (this.monitor) {
+			resolveMethod(fullMethodName);
+			return this.snapshot.inputs().get(fullMethodName);
+		}
 	}
 
 	public void input(String fullMethodName, Class<?> type, Descriptor descriptor) {
-		this.inputs.put(fullMethodName, new DescriptorMapping(type, descriptor));
+		synchronized (this.monitor) {
+			publish(Map.of(fullMethodName, new DescriptorMapping(type, descriptor)), Map.of());
+		}
 	}
 
 	public DescriptorMapping output(String fullMethodName) {
-		return this.outputs.get(fullMethodName);
+		DescriptorMapping mapping = this.snapshot.outputs().get(fullMethodName);
+		if (mapping != null) {
+			return mapping;
+		}
+		synchronized (this.monitor) {
+			resolveMethod(fullMethodName);
+			return this.snapshot.outputs().get(fullMethodName);
+		}
 	}
 
 	public void output(String fullMethodName, Class<?> type, Descriptor descriptor) {
-		this.outputs.put(fullMethodName, new DescriptorMapping(type, descriptor));
+		synchronized (this.monitor) {
+			publish(Map.of(), Map.of(fullMethodName, new DescriptorMapping(type, descriptor)));
+		}
 	}
 
 	@Override
 	public void register(FileDescriptor file) {
-		this.catalog.register(file);
+		synchronized (this.monitor) {
+			this.catalog.register(file);
+		}
 	}
 
 	@Override
 	public void register(ServiceDescriptor service) {
-		this.catalog.register(service);
+		synchronized (this.monitor) {
+			this.catalog.register(service);
+		}
 	}
 
-	private void register(MethodDescriptor method, Class<?> input, Class<?> output) {
+	private void register(MethodDescriptor method, Class<?> input, Class<?> output,
+			Map<String, DescriptorMapping> inputs, Map<String, DescriptorMapping> outputs) {
 		this.catalog.register(method.getFile());
 		String name = method.getFullName();
 		name = name.substring(0, name.lastIndexOf(method.getName()) - 1) + "/" + method.getName();
-		this.input(name, input, method.getInputType());
-		this.output(name, output, method.getOutputType());
+		inputs.put(name, new DescriptorMapping(input, method.getInputType()));
+		outputs.put(name, new DescriptorMapping(output, method.getOutputType()));
 	}
 
 	private MethodDescriptor findMethod(DescriptorProvider provider, String fullMethodName) {
+		if (provider instanceof DescriptorCatalog catalog) {
+			return catalog.method(fullMethodName);
+		}
 		String serviceName = fullMethodName.substring(0, fullMethodName.lastIndexOf('/'));
 		String methodName = fullMethodName.substring(fullMethodName.lastIndexOf('/') + 1);
 		ServiceDescriptor service = provider.service(serviceName);
@@ -131,27 +275,36 @@ public class DefaultDescriptorRegistry implements DescriptorProvider, Descriptor
 
 	@Override
 	public Descriptor type(String name) {
+		if (!this.snapshot.pending().isEmpty()) {
+			synchronized (this.monitor) {
+				resolve();
+			}
+		}
 		return this.catalog.type(name);
 	}
 
 	@Override
 	public ServiceDescriptor service(String name) {
+		if (this.snapshot.pending().contains(name)) {
+			synchronized (this.monitor) {
+				resolve(name);
+			}
+		}
 		return this.catalog.service(name);
 	}
 
 	public void validate(String fullMethodName, Class<?> requestType, Class<?> responseType) {
-		String methodName = fullMethodName.substring(fullMethodName.lastIndexOf('/') + 1);
-		String serviceName = fullMethodName.substring(0, fullMethodName.lastIndexOf('/'));
-		if (this.catalog.service(serviceName) != null) {
-			ServiceDescriptor service = this.catalog.service(serviceName);
-			if (service == null || service.findMethodByName(methodName) == null) {
+		String serviceName = serviceName(fullMethodName);
+		if (service(serviceName) != null) {
+			MethodDescriptor method = this.catalog.method(fullMethodName);
+			if (method == null) {
 				throw new IllegalStateException("Service or method not found: " + fullMethodName);
 			}
-			Descriptor inputType = service.findMethodByName(methodName).getInputType();
-			Descriptor outputType = service.findMethodByName(methodName).getOutputType();
+			Descriptor inputType = method.getInputType();
+			Descriptor outputType = method.getOutputType();
 			if (this.strict) {
-				validateMessage(fullMethodName, requestType, inputType.getFields());
-				validateMessage(fullMethodName, responseType, outputType.getFields());
+				validateMessage(fullMethodName, requestType, inputType);
+				validateMessage(fullMethodName, responseType, outputType);
 			}
 		}
 		else {
@@ -159,82 +312,94 @@ public class DefaultDescriptorRegistry implements DescriptorProvider, Descriptor
 		}
 	}
 
-	private void validateMessage(String fullMethodName, Class<?> responseType, List<FieldDescriptor> fields) {
-		for (FieldDescriptor field : fields) {
-			// TODO: just compare with the result from the DescriptorMapper instead of
-			// using BeanUtils
-			PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(responseType, field.getName());
-			if (descriptor == null) {
-				throw new IllegalArgumentException("Field " + field.getName() + " not found in class "
-						+ responseType.getName() + " for method " + fullMethodName);
+	private void validateMessage(String fullMethodName, Class<?> type, Descriptor schema) {
+		if (type == null || type == Object.class || Message.class.isAssignableFrom(type)) {
+			// Protobuf messages carry their own schema, and Object means any message
+			return;
+		}
+		Validation key = new Validation(type, schema);
+		String problem = this.validations.get(key);
+		if (problem == null) {
+			problem = compare("", this.mapper.descriptor(type), schema, new HashSet<>());
+			problem = problem == null ? "" : problem + " in class " + type.getName();
+			this.validations.putIfAbsent(key, problem);
+		}
+		if (!problem.isEmpty()) {
+			throw new IllegalArgumentException(problem + " for method " + fullMethodName);
+		}
+	}
+
+	/**
+	 * Compare the schema with the descriptor that the {@link DescriptorMapper} derives
+	 * from the Java type, returning a description of the first mismatch (or
+	 * <code>null</code> if they are compatible). All the fields in the schema must be
+	 * present in the Java type, but it can have extra fields.
+	 */
+	private static String compare(String path, Descriptor actual, Descriptor schema, Set<List<Descriptor>> visited) {
+		if (!visited.add(List.of(actual, schema))) {
+			return null;
+		}
+		for (FieldDescriptor field : schema.getFields()) {
+			String name = path + field.getName();
+			FieldDescriptor mapped = actual.findFieldByName(field.getName());
+			if (mapped == null) {
+				return "Field " + name + " not found";
 			}
-			// TODO: map types
-			if (field.isMapField()) {
-				if (!Map.class.isAssignableFrom(descriptor.getPropertyType())) {
-					throw new IllegalArgumentException(
-							"Field " + field.getName() + " is a map in the schema, but is not a map in class "
-									+ responseType.getName() + " for method " + fullMethodName);
-				}
+			if (field.isMapField() != mapped.isMapField()) {
+				return "Field " + name + (field.isMapField() ? " is a map in the schema, but is not a map"
+						: " is not a map in the schema, but is a map");
 			}
-			else if (field.isRepeated() && !descriptor.getPropertyType().isArray()
-					&& !Iterable.class.isAssignableFrom(descriptor.getPropertyType())) {
-				throw new IllegalArgumentException(
-						"Field " + field.getName() + " is repeated in the schema, but is not a collection in class "
-								+ responseType.getName() + " for method " + fullMethodName);
+			if (field.isRepeated() != mapped.isRepeated()) {
+				return "Field " + name + (field.isRepeated() ? " is repeated in the schema, but is not a collection"
+						: " is not repeated in the schema, but is a collection");
 			}
-			if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
-				validateMessage(fullMethodName, descriptor.getPropertyType(), field.getMessageType().getFields());
+			if (!compatible(field.getJavaType(), mapped.getJavaType())) {
+				return describe(name, field.getJavaType()) + " in the schema, but is not";
 			}
-			if (field.getJavaType() == FieldDescriptor.JavaType.ENUM) {
-				if (!descriptor.getPropertyType().isEnum()) {
-					throw new IllegalArgumentException(
-							"Field " + field.getName() + " is an enum in the schema, but is not in class "
-									+ responseType.getName() + " for method " + fullMethodName);
+			if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+				String problem = compare(name + ".", mapped.getMessageType(), field.getMessageType(), visited);
+				if (problem != null) {
+					return problem;
 				}
 			}
-			if (field.getJavaType() == FieldDescriptor.JavaType.BOOLEAN
-					&& !descriptor.getPropertyType().equals(Boolean.class)
-					&& !descriptor.getPropertyType().equals(boolean.class)) {
-				throw new IllegalArgumentException(
-						"Field '" + field.getName() + "' is a boolean in the schema, but is not in class "
-								+ responseType.getName() + " for method " + fullMethodName);
-			}
-			if ((field.getJavaType() == FieldDescriptor.JavaType.STRING
-					|| field.getJavaType() == FieldDescriptor.JavaType.BYTE_STRING)
-					&& !descriptor.getPropertyType().equals(String.class)) {
-				throw new IllegalArgumentException(
-						"Field '" + field.getName() + "' is a string in the schema, but is not in class "
-								+ responseType.getName() + " for method " + fullMethodName);
-			}
-			if (field.getJavaType() == FieldDescriptor.JavaType.DOUBLE
-					&& !descriptor.getPropertyType().equals(Double.class)
-					&& !descriptor.getPropertyType().equals(double.class)) {
-				throw new IllegalArgumentException(
-						"Field '" + field.getName() + "' is a double in the schema, but is not in class "
-								+ responseType.getName() + " for method " + fullMethodName);
-			}
-			if (field.getJavaType() == FieldDescriptor.JavaType.FLOAT
-					&& !descriptor.getPropertyType().equals(Float.class)
-					&& !descriptor.getPropertyType().equals(float.class)) {
-				throw new IllegalArgumentException(
-						"Field '" + field.getName() + "' is a float in the schema, but is not in class "
-								+ responseType.getName() + " for method " + fullMethodName);
-			}
-			if (field.getJavaType() == FieldDescriptor.JavaType.INT
-					&& !descriptor.getPropertyType().equals(Integer.class)
-					&& !descriptor.getPropertyType().equals(int.class)) {
-				throw new IllegalArgumentException(
-						"Field '" + field.getName() + "' is an integer in the schema, but is not in class "
-								+ responseType.getName() + " for method " + fullMethodName);
-			}
-			if (field.getJavaType() == FieldDescriptor.JavaType.LONG && !descriptor.getPropertyType().equals(Long.class)
-					&& !descriptor.getPropertyType().equals(long.class)) {
-				throw new IllegalArgumentException(
-						"Field '" + field.getName() + "' is a long in the schema, but is not in class "
-								+ responseType.getName() + " for method " + fullMethodName);
-			}
 		}
-		// All fields in the input type must be present in the class
+		return null;
+	}
+
+	private static boolean compatible(FieldDescriptor.JavaType schema, FieldDescriptor.JavaType actual) {
+		// Strings have always been accepted for bytes
+		return schema == actual
+				|| (schema == FieldDescriptor.JavaType.BYTE_STRING && actual == FieldDescriptor.JavaType.STRING);
+	}
+
+	private static String describe(String name, FieldDescriptor.JavaType type) {
+		switch (type) {
+			case MESSAGE:
+				return "Field " + name + " is a message";
+			case ENUM:
+				return "Field " + name + " is an enum";
+			case INT:
+				return "Field '" + name + "' is an integer";
+			case BYTE_STRING:
+				// Bytes have always been reported as strings
+				return "Field '" + name + "' is a string";
+			default:
+				return "Field '" + name + "' is a " + type.name().toLowerCase(Locale.ROOT);
+		}
+	}
+
+	private record Validation(Class<?> type, Descriptor schema) {
+	}
+
+	private record Pending(Class<?> input, Class<?> output) {
+	}
+
+	/**
+	 * An immutable view of the method mappings, and of the services that have methods
+	 * waiting to be resolved, so that lookups need no locking.
+	 */
+	private record Snapshot(Map<String, DescriptorMapping> inputs, Map<String, DescriptorMapping> outputs,
+			Set<String> pending) {
 	}
 
 }
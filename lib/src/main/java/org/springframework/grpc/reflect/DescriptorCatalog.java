@@ -15,99 +15,102 @@
  */
 package org.springframework.grpc.reflect;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumDescriptor;
 import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.Descriptors.MethodDescriptor;
 import com.google.protobuf.Descriptors.ServiceDescriptor;
 
 /**
  * A catalog that manages and provides access to protocol buffer file descriptors.
  * <p>
  * This class serves as a central repository for storing and retrieving gRPC descriptors
- * used in reflection.
+ * used in reflection. Services, methods, messages (including nested messages) and enums
+ * are indexed by their full names as the files are registered, so that each lookup is a
+ * single hash probe, however many files there are.
  *
  * @author Dave Syer
  * @since 1.0.0
  */
 public class DescriptorCatalog implements DescriptorProvider, DescriptorRegistry {
 
-	private Map<String, FileDescriptor> fileDescriptors = new HashMap<>();
+	// Concurrent so that lookups are lock-free, even while files are being registered
+	private Map<String, FileDescriptor> files = new ConcurrentHashMap<>();
 
-	private Map<String, Descriptor> descriptors = new HashMap<>();
+	private Map<String, ServiceDescriptor> services = new ConcurrentHashMap<>();
+
+	private Map<String, MethodDescriptor> methods = new ConcurrentHashMap<>();
+
+	private Map<String, Descriptor> descriptors = new ConcurrentHashMap<>();
+
+	private Map<String, EnumDescriptor> enums = new ConcurrentHashMap<>();
 
 	@Override
 	public void register(FileDescriptor file) {
+		if (this.files.put(file.getName(), file) == file) {
+			// Already indexed
+			return;
+		}
 		for (ServiceDescriptor service : file.getServices()) {
-			register(service);
+			this.services.put(service.getFullName(), service);
+			for (MethodDescriptor method : service.getMethods()) {
+				this.methods.put(service.getFullName() + "/" + method.getName(), method);
+			}
 		}
 		for (Descriptor type : file.getMessageTypes()) {
 			register(type);
 		}
+		for (EnumDescriptor type : file.getEnumTypes()) {
+			this.enums.put(type.getFullName(), type);
+		}
 	}
 
 	@Override
 	public void register(ServiceDescriptor service) {
-		this.fileDescriptors.put(service.getFullName(), service.getFile());
+		// The rest of the file comes with the service
+		register(service.getFile());
 	}
 
 	private void register(Descriptor type) {
 		this.descriptors.put(type.getFullName(), type);
-	}
-
-	private String pkg(FileDescriptor file) {
-		String pkg = file.getPackage();
-		if (pkg == null || pkg.isEmpty() || pkg.equals(".")) {
-			pkg = "";
+		for (Descriptor nested : type.getNestedTypes()) {
+			register(nested);
 		}
-		else {
-			pkg = pkg + ".";
+		for (EnumDescriptor nested : type.getEnumTypes()) {
+			this.enums.put(nested.getFullName(), nested);
 		}
-		return pkg;
 	}
 
 	@Override
 	public Descriptor type(String name) {
-		if (this.descriptors.containsKey(name)) {
-			return this.descriptors.get(name);
-		}
-		for (FileDescriptor file : this.fileDescriptors.values()) {
-			String pkg = pkg(file);
-			if (!pkg.isEmpty()) {
-				if (name.startsWith(pkg)) {
-					name = name.substring(pkg.length());
-				}
-				else {
-					continue;
-				}
-			}
-			Descriptor descriptor = file.findMessageTypeByName(name);
-			if (descriptor != null) {
-				return descriptor;
-			}
-		}
-		return null;
+		return this.descriptors.get(name);
 	}
 
 	@Override
 	public ServiceDescriptor service(String name) {
-		for (FileDescriptor file : this.fileDescriptors.values()) {
-			String pkg = pkg(file);
-			if (!pkg.isEmpty()) {
-				if (name.startsWith(pkg)) {
-					name = name.substring(pkg.length());
-				}
-				else {
-					continue;
-				}
-			}
-			ServiceDescriptor descriptor = file.findServiceByName(name);
-			if (descriptor != null) {
-				return descriptor;
-			}
-		}
-		return null;
+		return this.services.get(name);
+	}
+
+	/**
+	 * Find an enum type by its full name.
+	 * @param name the full name of the enum
+	 * @return the enum descriptor or <code>null</code> if there is none
+	 */
+	public EnumDescriptor enumType(String name) {
+		return this.enums.get(name);
+	}
+
+	/**
+	 * Find a method by its full gRPC name (<code>service/method</code>, where the
+	 * service is the full name, including its package).
+	 * @param fullMethodName the full name of the method
+	 * @return the method descriptor or <code>null</code> if there is none
+	 */
+	public MethodDescriptor method(String fullMethodName) {
+		return this.methods.get(fullMethodName);
 	}
 
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import com.google.protobuf.Descriptors.Descriptor;
+
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+
+/**
+ * An immutable, pre-resolved handle for a method that can be called through a
+ * {@link DynamicStub}. It bundles the gRPC {@link MethodDescriptor} (including the
+ * marshallers for the request and response) with the protobuf descriptors of the
+ * messages, so that once it has been resolved a call does not need to consult the
+ * registry again. Instances are obtained from {@link DynamicStub#method(String)} and
+ * can be shared between threads and between stubs with different call options.
+ *
+ * @param <T> the Java type of the response
+ * @author Dave Syer
+ * @since 1.0.0
+ */
+public final class DynamicMethod<T> {
+
+	private final MethodDescriptor<Object, T> methodDescriptor;
+
+	private final Descriptor requestDescriptor;
+
+	private final Descriptor responseDescriptor;
+
+	private final Class<T> responseType;
+
+	DynamicMethod(String fullMethodName, MethodType methodType, DescriptorMapping input, DescriptorMapping output,
+			Class<T> responseType, MessageConverter converter) {
+		this.requestDescriptor = input.descriptor();
+		this.responseDescriptor = output.descriptor();
+		this.responseType = responseType;
+		this.methodDescriptor = MethodDescriptor.<Object, T>newBuilder()
+			.setType(methodType)
+			.setFullMethodName(fullMethodName)
+			.setRequestMarshaller(new MessageMarshaller<>(Object.class, this.requestDescriptor, converter))
+			.setResponseMarshaller(new MessageMarshaller<>(responseType, this.responseDescriptor, converter))
+			.build();
+	}
+
+	public String getFullMethodName() {
+		return this.methodDescriptor.getFullMethodName();
+	}
+
+	public MethodType getType() {
+		return this.methodDescriptor.getType();
+	}
+
+	public MethodDescriptor<Object, T> getMethodDescriptor() {
+		return this.methodDescriptor;
+	}
+
+	public Descriptor getRequestDescriptor() {
+		return this.requestDescriptor;
+	}
+
+	public Descriptor getResponseDescriptor() {
+		return this.responseDescriptor;
+	}
+
+	public Class<T> getResponseType() {
+		return this.responseType;
+	}
+
+	@Override
+	public String toString() {
+		return "DynamicMethod [" + getFullMethodName() + ", " + getType() + "]";
+	}
+
+}
@@ -15,21 +15,35 @@
  */
 package org.springframework.grpc.reflect;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.reactivestreams.Publisher;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 
 import com.google.protobuf.Descriptors;
-import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.Descriptors.FileDescriptor;
-import com.google.protobuf.DynamicMessage;
 
 import io.grpc.BindableService;
 import io.grpc.MethodDescriptor;
@@ -39,14 +53,16 @@ import io.grpc.ServerCallHandler;
 import io.grpc.ServerServiceDefinition;
 import io.grpc.ServiceDescriptor;
 import io.grpc.ServiceDescriptor.Builder;
+import io.grpc.Status;
 import io.grpc.protobuf.ProtoMethodDescriptorSupplier;
 import io.grpc.protobuf.ProtoServiceDescriptorSupplier;
-import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.ServerCalls;
-import io.grpc.stub.StreamObserver;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
-import reactor.core.publisher.Sinks.Many;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * Factory for creating dynamic gRPC services at runtime.
@@ -60,26 +76,148 @@ import reactor.core.publisher.Sinks.Many;
  */
 public class DynamicServiceFactory {
 
+	/**
+	 * The default number of items requested from a response publisher ahead of the
+	 * transport being able to send them.
+	 */
+	public static final int DEFAULT_PREFETCH = 32;
+
 	private final MessageConverter converter;
 
 	private final DefaultDescriptorRegistry registry;
 
+	private int prefetch = DEFAULT_PREFETCH;
+
+	private int maxBufferedBytes;
+
+	private boolean virtualThreads;
+
+	private volatile Executor virtualThreadExecutor;
+
+	private final Set<String> virtualThreadMethods = ConcurrentHashMap.newKeySet();
+
+	private final Map<String, ConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+
 	public DynamicServiceFactory(DefaultDescriptorRegistry registry) {
+		this(registry, new MessageConverter());
+	}
+
+	public DynamicServiceFactory(DefaultDescriptorRegistry registry, MessageConverter converter) {
 		this.registry = registry;
-		this.converter = new MessageConverter();
+		this.converter = converter;
+	}
+
+	/**
+	 * Set the maximum number of items that are requested from a streaming response
+	 * publisher but not yet sent. Items are only requested while the transport is ready,
+	 * so this bounds the memory used by a slow client.
+	 * @param prefetch the prefetch (default {@value #DEFAULT_PREFETCH})
+	 */
+	public void setPrefetch(int prefetch) {
+		if (prefetch < 1) {
+			throw new IllegalArgumentException("Prefetch must be positive: " + prefetch);
+		}
+		this.prefetch = prefetch;
+	}
+
+	/**
+	 * Set the maximum number of bytes (serialized) of the requests from a client that
+	 * can be buffered for a bidirectional stream before the handler consumes them. When
+	 * the budget is used up no more requests are read from the transport, so the client
+	 * is slowed down by flow control. Measuring the requests has a cost, so the default
+	 * is 0, meaning there is no limit other than the {@link #setPrefetch(int) prefetch}.
+	 * @param maxBufferedBytes the byte budget for each stream
+	 */
+	public void setMaxBufferedBytes(int maxBufferedBytes) {
+		this.maxBufferedBytes = Math.max(maxBufferedBytes, 0);
+	}
+
+	/**
+	 * Run all the handlers on virtual threads, not only the ones that ask for it (e.g.
+	 * with {@link GrpcMapping#virtualThreads()}).
+	 * @param virtualThreads whether all handlers run on virtual threads
+	 */
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * Set the executor for the handlers that run on virtual threads. The default starts
+	 * a new virtual thread for each call, which requires Java 21. It is only created if
+	 * a service that needs it is built.
+	 * @param executor the executor to use
+	 */
+	public void setVirtualThreadExecutor(Executor executor) {
+		this.virtualThreadExecutor = executor;
+	}
+
+	/**
+	 * The executor for the handlers that run on virtual threads, creating the default
+	 * one if necessary. It is resolved once, when the first service that needs it is
+	 * built, so that a missing capability is reported at startup, not per call.
+	 * @return the executor
+	 * @throws IllegalStateException if the default is needed but virtual threads are not
+	 * available (before Java 21)
+	 */
+	public Executor getVirtualThreadExecutor() {
+		Executor executor = this.virtualThreadExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				executor = this.virtualThreadExecutor;
+				if (executor == null) {
+					executor = createVirtualThreadExecutor();
+					this.virtualThreadExecutor = executor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	private static Executor createVirtualThreadExecutor() {
+		try {
+			return new VirtualThreadTaskExecutor("grpc-virtual-");
+		}
+		catch (UnsupportedOperationException | LinkageError e) {
+			throw new IllegalStateException("Running gRPC handlers on virtual threads requires Java 21 or a custom "
+					+ "executor (see DynamicServiceFactory.setVirtualThreadExecutor)", e);
+		}
+	}
+
+	/**
+	 * Whether a method (in a service built by this factory) runs on virtual threads.
+	 * @param fullMethodName the full method name (service/method)
+	 * @return true if the handler runs on virtual threads
+	 */
+	public boolean isVirtualThreads(String fullMethodName) {
+		return this.virtualThreadMethods.contains(fullMethodName);
+	}
+
+	/**
+	 * The concurrency limiters of all the methods (in all the services built by this
+	 * factory) that have one, keyed by the full method name, e.g. to publish their
+	 * state as metrics.
+	 * @return the concurrency limiters
+	 */
+	public Map<String, ConcurrencyLimiter> getConcurrencyLimiters() {
+		return Collections.unmodifiableMap(this.concurrencyLimiters);
 	}
 
 	public <T> BindableServiceBuilder service(String serviceName) {
-		return new BindableServiceBuilder(serviceName, this.registry, this.converter);
+		return new BindableServiceBuilder(serviceName, this.registry, this.converter, options());
 	}
 
 	public <T> BindableServiceInstanceBuilder service(T instance) {
 		return new BindableServiceInstanceBuilder(instance, instance.getClass().getSimpleName(), this.registry,
-				this.converter);
+				this.converter, options());
 	}
 
 	public <T> BindableServiceInstanceBuilder service(String serviceName, T instance) {
-		return new BindableServiceInstanceBuilder(instance, serviceName, this.registry, this.converter);
+		return new BindableServiceInstanceBuilder(instance, serviceName, this.registry, this.converter, options());
+	}
+
+	private ServerOptions options() {
+		return new ServerOptions(this.prefetch, this.maxBufferedBytes, this.virtualThreads,
+				this::getVirtualThreadExecutor, this.virtualThreadMethods, this.concurrencyLimiters);
 	}
 
 	static class SimpleBaseDescriptorSupplier implements ProtoServiceDescriptorSupplier {
@@ -128,9 +266,42 @@ public class DynamicServiceFactory {
 		private Object instance;
 
 		private <T> BindableServiceInstanceBuilder(T instance, String serviceName, DefaultDescriptorRegistry registry,
-				MessageConverter converter) {
+				MessageConverter converter, ServerOptions options) {
 			this.instance = instance;
-			this.builder = new BindableServiceBuilder(serviceName, registry, converter);
+			this.builder = new BindableServiceBuilder(serviceName, registry, converter, options);
+		}
+
+		/**
+		 * Prepare the message types of all the methods provided in a single batch,
+		 * before they are registered one by one. Only has an effect if the service is
+		 * not already described by the registry.
+		 * @param methods the methods that will be registered
+		 * @return this builder
+		 */
+		public BindableServiceInstanceBuilder prepare(Collection<Method> methods) {
+			Set<Class<?>> types = new LinkedHashSet<>();
+			for (Method method : methods) {
+				types.add(messageType(method.getParameterTypes()[0], method.getGenericParameterTypes()[0]));
+				types.add(messageType(method.getReturnType(), method.getGenericReturnType()));
+			}
+			this.builder.prepare(types);
+			return this;
+		}
+
+		private static Class<?> messageType(Class<?> type, Type genericType) {
+			if ((Publisher.class.isAssignableFrom(type) || isAsync(type))
+					&& genericType instanceof ParameterizedType parameterized
+					&& parameterized.getActualTypeArguments()[0] instanceof Class<?> element) {
+				return element;
+			}
+			return type;
+		}
+
+		/**
+		 * A return type that represents a single value that is computed asynchronously.
+		 */
+		private static boolean isAsync(Class<?> type) {
+			return Mono.class.isAssignableFrom(type) || CompletionStage.class.isAssignableFrom(type);
 		}
 
 		public BindableServiceInstanceBuilder method(String methodName) {
@@ -151,24 +322,44 @@ public class DynamicServiceFactory {
 		}
 
 		public BindableServiceInstanceBuilder method(Method method, String methodName) {
+			if (isVirtualThreads(method)) {
+				this.builder.virtualThreads(methodName);
+			}
+			ConcurrencyLimiter limiter = concurrencyLimiter(method);
+			if (limiter != null) {
+				this.builder.concurrencyLimit(methodName, limiter);
+			}
+			Function<Object, Object> invoker = invoker(this.instance, method);
 			Class<?> requestType = method.getParameterTypes()[0];
 			Type genericRequestType = method.getGenericParameterTypes()[0];
 			Class<?> responseType = method.getReturnType();
 			Type genericResponseType = method.getGenericReturnType();
 			if (requestType.equals(genericRequestType) && responseType.equals(genericResponseType)) {
 				this.builder.unary(methodName, requestType, responseType,
-						request -> invoker(instance, method, request));
+						request -> invoke(invoker, request));
+			}
+			else if (isAsync(responseType)) {
+				responseType = (Class<?>) ((ParameterizedType) genericResponseType).getActualTypeArguments()[0];
+				if (Publisher.class.isAssignableFrom(requestType)) {
+					requestType = (Class<?>) ((ParameterizedType) genericRequestType).getActualTypeArguments()[0];
+					this.builder.clientStream(methodName, requestType, responseType,
+							request -> async(invoker.apply(request)));
+				}
+				else {
+					this.builder.unaryAsync(methodName, requestType, responseType,
+							request -> async(invoker.apply(request)));
+				}
 			}
 			else if (Publisher.class.isAssignableFrom(responseType)) {
 				responseType = (Class<?>) ((ParameterizedType) genericResponseType).getActualTypeArguments()[0];
 				if (Publisher.class.isAssignableFrom(requestType)) {
 					requestType = (Class<?>) ((ParameterizedType) genericRequestType).getActualTypeArguments()[0];
 					this.builder.bidi(methodName, requestType, responseType,
-							request -> invoker(instance, method, request));
+							request -> invoke(invoker, request));
 				}
 				else {
 					this.builder.stream(methodName, requestType, responseType,
-							request -> invoker(instance, method, request));
+							request -> invoke(invoker, request));
 				}
 			}
 			else {
@@ -178,10 +369,66 @@ public class DynamicServiceFactory {
 			return this;
 		}
 
+		private static boolean isVirtualThreads(Method method) {
+			GrpcMapping mapping = AnnotationUtils.findAnnotation(method, GrpcMapping.class);
+			if (mapping != null && mapping.virtualThreads()) {
+				return true;
+			}
+			mapping = AnnotationUtils.findAnnotation(method.getDeclaringClass(), GrpcMapping.class);
+			return mapping != null && mapping.virtualThreads();
+		}
+
+		private static ConcurrencyLimiter concurrencyLimiter(Method method) {
+			GrpcMapping mapping = AnnotationUtils.findAnnotation(method, GrpcMapping.class);
+			if (mapping == null || mapping.concurrencyLimit() <= 0) {
+				mapping = AnnotationUtils.findAnnotation(method.getDeclaringClass(), GrpcMapping.class);
+			}
+			if (mapping == null || mapping.concurrencyLimit() <= 0) {
+				return null;
+			}
+			return new ConcurrencyLimiter(mapping.concurrencyLimit(), Duration.ofMillis(mapping.latencyThreshold()));
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <O> Publisher<O> async(Object result) {
+			if (result instanceof CompletionStage<?> stage) {
+				return Mono.fromCompletionStage((CompletionStage<O>) stage);
+			}
+			return result == null ? Mono.empty() : (Publisher<O>) result;
+		}
+
 		@SuppressWarnings("unchecked")
-		private <I, O> O invoker(Object instance, Method method, I request) {
+		private static <I, O> O invoke(Function<Object, Object> invoker, I request) {
+			return (O) invoker.apply(request);
+		}
+
+		/**
+		 * Bind the method to the instance once, as a {@link MethodHandle}, so that each
+		 * call is a direct invocation, without the access check and argument array of a
+		 * reflective call.
+		 */
+		private static Function<Object, Object> invoker(Object instance, Method method) {
 			ReflectionUtils.makeAccessible(method);
-			return (O) ReflectionUtils.invokeMethod(method, instance, request);
+			MethodHandle handle;
+			try {
+				handle = MethodHandles.lookup().unreflect(method);
+			}
+			catch (IllegalAccessException e) {
+				throw new IllegalStateException("Cannot access method " + method, e);
+			}
+			if (!Modifier.isStatic(method.getModifiers())) {
+				handle = handle.bindTo(instance);
+			}
+			MethodHandle invoker = handle.asType(java.lang.invoke.MethodType.methodType(Object.class, Object.class));
+			return request -> {
+				try {
+					return invoker.invokeExact(request);
+				}
+				catch (Throwable e) {
+					ReflectionUtils.rethrowRuntimeException(e);
+					return null;
+				}
+			};
 		}
 
 		public BindableService build() {
@@ -200,16 +447,34 @@ public class DynamicServiceFactory {
 
 		private MessageConverter converter;
 
-		private Map<String, ServerCallHandler<DynamicMessage, DynamicMessage>> handlers = new HashMap<>();
+		private ServerOptions options;
+
+		private Map<String, Registration> methods = new LinkedHashMap<>();
 
-		private Map<String, MethodDescriptor<DynamicMessage, DynamicMessage>> descriptors = new HashMap<>();
+		private Set<String> virtualThreads = new HashSet<>();
+
+		private Map<String, ConcurrencyLimiter> limiters = new LinkedHashMap<>();
 
 		private BindableServiceBuilder(String serviceName, DefaultDescriptorRegistry registry,
-				MessageConverter converter) {
+				MessageConverter converter, ServerOptions options) {
 			this.serviceName = serviceName;
 			this.fileDescriptors = registry;
 			this.registry = registry;
 			this.converter = converter;
+			this.options = options;
+		}
+
+		/**
+		 * Prepare the message types for the methods of this service in a single batch
+		 * (if the service is not already described by the registry).
+		 * @param types the request and response types
+		 * @return this builder
+		 */
+		public BindableServiceBuilder prepare(Collection<Class<?>> types) {
+			if (this.registry.service(this.serviceName) == null) {
+				this.registry.prepare(types);
+			}
+			return this;
 		}
 
 		public <I, O> BindableServiceBuilder unary(String methodName, Class<I> requestType, Class<O> responseType,
@@ -217,28 +482,108 @@ public class DynamicServiceFactory {
 			return method(methodName, requestType, responseType, function, MethodDescriptor.MethodType.UNARY);
 		}
 
+		/**
+		 * Register a unary method whose response is computed asynchronously, so that the
+		 * calling thread is not blocked while it is waiting. The first item emitted by
+		 * the publisher is the response, and if the call is cancelled the subscription is
+		 * disposed. If the publisher is empty (e.g. a CompletableFuture that completes
+		 * with null) the call fails with an INTERNAL status, unless the response type is
+		 * Void.
+		 * @param <I> the request type
+		 * @param <O> the response type
+		 * @param methodName the method name
+		 * @param requestType the request type
+		 * @param responseType the response type
+		 * @param function a function that returns the response (e.g. as a Mono)
+		 * @return this builder
+		 */
+		public <I, O> BindableServiceBuilder unaryAsync(String methodName, Class<I> requestType,
+				Class<O> responseType, Function<I, Publisher<O>> function) {
+			return method(methodName, requestType, responseType, function, MethodDescriptor.MethodType.UNARY, true);
+		}
+
 		public <I, O> BindableServiceBuilder stream(String methodName, Class<I> requestType, Class<O> responseType,
 				Function<I, Publisher<O>> function) {
 			return method(methodName, requestType, responseType, function,
 					MethodDescriptor.MethodType.SERVER_STREAMING);
 		}
 
+		/**
+		 * Register a client streaming method. The requests are handed to the function as
+		 * they arrive, with flow control, so they do not all have to be buffered. The
+		 * first item emitted by the publisher it returns is the response (and if it is
+		 * empty the call fails, as for {@link #unaryAsync(String, Class, Class, Function)}).
+		 * @param <I> the request type
+		 * @param <O> the response type
+		 * @param methodName the method name
+		 * @param requestType the request type
+		 * @param responseType the response type
+		 * @param function a function that aggregates the requests (e.g. into a Mono)
+		 * @return this builder
+		 */
+		public <I, O> BindableServiceBuilder clientStream(String methodName, Class<I> requestType,
+				Class<O> responseType, Function<Publisher<I>, Publisher<O>> function) {
+			return method(methodName, requestType, responseType, function,
+					MethodDescriptor.MethodType.CLIENT_STREAMING);
+		}
+
 		public <I, O> BindableServiceBuilder bidi(String methodName, Class<I> requestType, Class<O> responseType,
 				Function<Publisher<I>, Publisher<O>> function) {
 			return method(methodName, requestType, responseType, function, MethodDescriptor.MethodType.BIDI_STREAMING);
 		}
 
+		/**
+		 * Run the handler for a method on a virtual thread, so that it can block (e.g. on
+		 * I/O) without tying up a transport thread. Streaming requests are also delivered
+		 * to the handler on a virtual thread.
+		 * @param methodName the method name
+		 * @return this builder
+		 */
+		public BindableServiceBuilder virtualThreads(String methodName) {
+			this.virtualThreads.add(methodName);
+			return this;
+		}
+
+		/**
+		 * Limit the number of concurrent calls to a method, so that calls over the limit
+		 * fail fast with <code>RESOURCE_EXHAUSTED</code> instead of queueing.
+		 * @param methodName the method name
+		 * @param limiter the limiter for the method
+		 * @return this builder
+		 */
+		public BindableServiceBuilder concurrencyLimit(String methodName, ConcurrencyLimiter limiter) {
+			this.limiters.put(methodName, limiter);
+			return this;
+		}
+
 		private <I, O> BindableServiceBuilder method(String methodName, Class<I> requestType, Class<O> responseType,
 				Function<?, ?> function, MethodType methodType) {
+			return method(methodName, requestType, responseType, function, methodType, false);
+		}
+
+		private <I, O> BindableServiceBuilder method(String methodName, Class<I> requestType, Class<O> responseType,
+				Function<?, ?> function, MethodType methodType, boolean async) {
+			// Nothing is registered until the service is built, so that the descriptors for
+			// all the methods can be assembled in one go
+			this.methods.put(methodName, new Registration(requestType, responseType, function, methodType, async));
+			return this;
+		}
+
+		private void register(String methodName, Registration method) {
 			String fullMethodName = serviceName + "/" + methodName;
+			Class<?> requestType = method.requestType();
+			Class<?> responseType = method.responseType();
 			if (this.registry.input(fullMethodName) == null || this.registry.output(fullMethodName) == null) {
-				switch (methodType) {
+				switch (method.methodType()) {
 					case UNARY:
 						this.registry.unary(fullMethodName, requestType, responseType);
 						break;
 					case SERVER_STREAMING:
 						this.registry.stream(fullMethodName, requestType, responseType);
 						break;
+					case CLIENT_STREAMING:
+						this.registry.clientStream(fullMethodName, requestType, responseType);
+						break;
 					case BIDI_STREAMING:
 						this.registry.bidi(fullMethodName, requestType, responseType);
 						break;
@@ -247,129 +592,218 @@ public class DynamicServiceFactory {
 				}
 			}
 			else {
-				registry.validate(fullMethodName, requestType, responseType);
+				this.registry.validate(fullMethodName, requestType, responseType);
 			}
-			Descriptor inputType = file(serviceName).findServiceByName(serviceName)
-				.findMethodByName(methodName)
-				.getInputType();
-			Descriptor outputType = file(serviceName).findServiceByName(serviceName)
-				.findMethodByName(methodName)
-				.getOutputType();
-			Marshaller<DynamicMessage> responseMarshaller = ProtoUtils
-				.marshaller(DynamicMessage.newBuilder(outputType).build());
-			Marshaller<DynamicMessage> requestMarshaller = ProtoUtils
-				.marshaller(DynamicMessage.newBuilder(inputType).build());
-			MethodDescriptor<DynamicMessage, DynamicMessage> methodDescriptor = MethodDescriptor
-				.<DynamicMessage, DynamicMessage>newBuilder()
-				.setType(methodType)
-				.setFullMethodName(fullMethodName)
+		}
+
+		private MethodDescriptor<Object, Object> descriptor(FileDescriptor file, String methodName,
+				Registration method) {
+			Descriptors.MethodDescriptor schema = file.findServiceByName(serviceName).findMethodByName(methodName);
+			@SuppressWarnings("unchecked")
+			Marshaller<Object> responseMarshaller = (Marshaller<Object>) new MessageMarshaller<>(
+					method.responseType(), schema.getOutputType(), this.converter);
+			@SuppressWarnings("unchecked")
+			Marshaller<Object> requestMarshaller = (Marshaller<Object>) new MessageMarshaller<>(method.requestType(),
+					schema.getInputType(), this.converter);
+			return MethodDescriptor.<Object, Object>newBuilder()
+				.setType(method.methodType())
+				.setFullMethodName(serviceName + "/" + methodName)
 				.setRequestMarshaller(requestMarshaller)
 				.setResponseMarshaller(responseMarshaller)
-				.setSchemaDescriptor(new SimpleMethodDescriptor(file(serviceName), serviceName, methodName))
+				.setSchemaDescriptor(new SimpleMethodDescriptor(file, serviceName, methodName))
 				.build();
-			ServerCallHandler<DynamicMessage, DynamicMessage> handler = handler(requestType, outputType, function,
-					methodType);
-			this.handlers.put(methodName, handler);
-			this.descriptors.put(methodName, methodDescriptor);
-			return this;
 		}
 
 		public BindableService build() {
+			for (Map.Entry<String, Registration> entry : this.methods.entrySet()) {
+				register(entry.getKey(), entry.getValue());
+			}
+			// The file for the service is assembled here, once for all the methods
+			FileDescriptor file = file(serviceName);
+			Map<String, MethodDescriptor<Object, Object>> descriptors = new LinkedHashMap<>();
 			Builder descriptor = ServiceDescriptor.newBuilder(serviceName);
-			descriptor.setSchemaDescriptor(new SimpleBaseDescriptorSupplier(file(serviceName), serviceName));
-			for (Map.Entry<String, ServerCallHandler<DynamicMessage, DynamicMessage>> entry : handlers.entrySet()) {
-				String methodName = entry.getKey();
-				MethodDescriptor<DynamicMessage, DynamicMessage> methodDescriptor = descriptors.get(methodName);
+			descriptor.setSchemaDescriptor(new SimpleBaseDescriptorSupplier(file, serviceName));
+			for (Map.Entry<String, Registration> entry : this.methods.entrySet()) {
+				MethodDescriptor<Object, Object> methodDescriptor = descriptor(file, entry.getKey(), entry.getValue());
+				descriptors.put(entry.getKey(), methodDescriptor);
 				descriptor.addMethod(methodDescriptor);
 			}
 			ServerServiceDefinition.Builder service = ServerServiceDefinition.builder(descriptor.build());
-			for (Map.Entry<String, ServerCallHandler<DynamicMessage, DynamicMessage>> entry : handlers.entrySet()) {
-				String methodName = entry.getKey();
-				ServerCallHandler<DynamicMessage, DynamicMessage> handler = entry.getValue();
-				MethodDescriptor<DynamicMessage, DynamicMessage> methodDescriptor = descriptors.get(methodName);
+			for (Map.Entry<String, Registration> entry : this.methods.entrySet()) {
+				Registration method = entry.getValue();
+				MethodDescriptor<Object, Object> methodDescriptor = descriptors.get(entry.getKey());
+				MessageMarshaller<Object> requests = (MessageMarshaller<Object>) methodDescriptor
+					.getRequestMarshaller();
+				Executor executor = executor(entry.getKey());
+				if (executor != null) {
+					this.options.virtualThreadMethods().add(methodDescriptor.getFullMethodName());
+				}
+				ServerCallHandler<Object, Object> handler = handler(method, requests, executor);
+				ConcurrencyLimiter limiter = this.limiters.get(entry.getKey());
+				if (limiter != null) {
+					// Wraps the handler so it applies to every transport (including WebFlux)
+					handler = limiter.limit(handler);
+					this.options.concurrencyLimiters().put(methodDescriptor.getFullMethodName(), limiter);
+				}
 				service.addMethod(methodDescriptor, handler);
 			}
 			return () -> service.build();
 		}
 
-		private <I, O> ServerCallHandler<DynamicMessage, DynamicMessage> handler(Class<I> requestType,
-				Descriptor descriptor, Function<?, ?> function, MethodType methodType) {
+		private Executor executor(String methodName) {
+			if (this.options.virtualThreads() || this.virtualThreads.contains(methodName)) {
+				return this.options.virtualThreadExecutor().get();
+			}
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		private <I, O> ServerCallHandler<Object, Object> handler(Registration method,
+				MessageMarshaller<Object> marshaller, Executor executor) {
+			Function<?, ?> function = method.function();
+			MethodType methodType = method.methodType();
+			Scheduler scheduler = executor == null ? null : Schedulers.fromExecutor(executor);
 			switch (methodType) {
 				case UNARY:
-					return ServerCalls.asyncUnaryCall((req, obs) -> {
-						I input = converter.convert(req, requestType);
-						@SuppressWarnings("unchecked")
-						O output = ((Function<I, O>) function).apply(input);
-						obs.onNext((DynamicMessage) converter.convert(output, descriptor));
-						obs.onCompleted();
-					});
+					if (method.async()) {
+						Function<I, Publisher<O>> async = offload((Function<I, Publisher<O>>) function, scheduler);
+						return ServerCalls.asyncUnaryCall(
+								(req, obs) -> respond(async.apply((I) req), method.responseType(),
+										(ServerCallStreamObserver<Object>) obs));
+					}
+					return ServerCalls.asyncUnaryCall(
+							(req, obs) -> execute(executor, (ServerCallStreamObserver<Object>) obs, () -> {
+								O output = ((Function<I, O>) function).apply((I) req);
+								obs.onNext(output);
+								obs.onCompleted();
+							}));
 				case SERVER_STREAMING:
+					Function<I, Publisher<O>> stream = offload((Function<I, Publisher<O>>) function, scheduler);
 					return ServerCalls.asyncServerStreamingCall((req, obs) -> {
-						I input = converter.convert(req, requestType);
-						@SuppressWarnings("unchecked")
-						Flux<O> output = Flux.from(((Function<I, Publisher<O>>) function).apply(input));
-						output.doOnNext(item -> {
-							obs.onNext((DynamicMessage) converter.convert(item, descriptor));
-						}).doOnComplete(() -> obs.onCompleted()).doOnError(error -> obs.onError(error)).subscribe();
+						// Demand is driven by the transport, so the subscriber is created first
+						CallStreamSubscriber<Object> subscriber = new CallStreamSubscriber<>(
+								(ServerCallStreamObserver<Object>) obs, this.options.prefetch());
+						stream.apply((I) req).subscribe(subscriber);
+					});
+				case CLIENT_STREAMING:
+					Function<Publisher<I>, Publisher<O>> aggregate = offload(
+							(Function<Publisher<I>, Publisher<O>>) function, scheduler);
+					return ServerCalls.asyncClientStreamingCall(obs -> {
+						RequestStreamObserver<I> requests = requests((ServerCallStreamObserver<Object>) obs,
+								marshaller);
+						respond(aggregate.apply(input(requests, scheduler)), method.responseType(),
+								(ServerCallStreamObserver<Object>) obs);
+						return requests;
 					});
 				case BIDI_STREAMING:
-					return ServerCalls.asyncBidiStreamingCall(
-							obs -> new BidiStreamObserver<I, O>(function, obs, requestType, descriptor));
+					Function<Publisher<I>, Publisher<O>> bidi = offload((Function<Publisher<I>, Publisher<O>>) function,
+							scheduler);
+					return ServerCalls.asyncBidiStreamingCall(obs -> {
+						RequestStreamObserver<I> requests = requests((ServerCallStreamObserver<Object>) obs,
+								marshaller);
+						CallStreamSubscriber<Object> subscriber = new CallStreamSubscriber<>(
+								(ServerCallStreamObserver<Object>) obs, this.options.prefetch());
+						bidi.apply(input(requests, scheduler)).subscribe(subscriber);
+						return requests;
+					});
 				default:
 					throw new UnsupportedOperationException("Unsupported method type: " + methodType);
 			}
 		}
 
-		private FileDescriptor file(String serviceName) {
-			com.google.protobuf.Descriptors.ServiceDescriptor service = fileDescriptors.service(serviceName);
-			return service == null ? null : service.getFile();
+		private <I> RequestStreamObserver<I> requests(ServerCallStreamObserver<Object> observer,
+				MessageMarshaller<Object> marshaller) {
+			return new RequestStreamObserver<>(observer, this.options.prefetch(), this.options.maxBufferedBytes(),
+					marshaller::size);
 		}
 
-		private class BidiStreamObserver<I, O> implements StreamObserver<DynamicMessage> {
-
-			private final StreamObserver<DynamicMessage> obs;
-
-			private final Class<I> requestType;
-
-			private Many<I> sink;
-
-			private Flux<O> output;
-
-			private Descriptor descriptor;
-
-			@SuppressWarnings("unchecked")
-			private BidiStreamObserver(Function<?, ?> function, StreamObserver<DynamicMessage> obs,
-					Class<I> requestType, Descriptor descriptor) {
-				this.obs = obs;
-				this.requestType = requestType;
-				this.descriptor = descriptor;
-				this.sink = Sinks.many().unicast().onBackpressureBuffer();
-				this.output = Flux.from(((Function<Publisher<I>, Publisher<O>>) function).apply(this.sink.asFlux()));
-				this.output.doOnNext(item -> {
-					obs.onNext((DynamicMessage) converter.convert(item, this.descriptor));
-				}).subscribe();
+		/**
+		 * The requests as seen by the handler, moved onto the scheduler (if there is one)
+		 * so that the handler can block while it processes them.
+		 */
+		private <I> Flux<I> input(RequestStreamObserver<I> requests, Scheduler scheduler) {
+			if (scheduler == null) {
+				return requests.flux();
 			}
+			return requests.flux().publishOn(scheduler, this.options.prefetch());
+		}
 
-			@Override
-			public void onNext(DynamicMessage value) {
-				I input = converter.convert(value, requestType);
-				this.sink.tryEmitNext(input);
+		/**
+		 * Call the handler function, and subscribe to its result, on the scheduler (if
+		 * there is one) instead of the calling (transport) thread.
+		 */
+		private static <I, O> Function<I, Publisher<O>> offload(Function<I, Publisher<O>> function,
+				Scheduler scheduler) {
+			if (scheduler == null) {
+				return function;
 			}
+			return input -> Flux.defer(() -> function.apply(input)).subscribeOn(scheduler);
+		}
 
-			@Override
-			public void onError(Throwable t) {
-				obs.onError(t);
-				this.sink.tryEmitError(t);
+		/**
+		 * Run a blocking handler on the executor (if there is one), unless the call has
+		 * been cancelled before it gets there. Whatever the handler throws on the executor
+		 * closes the call with an error status.
+		 */
+		private static void execute(Executor executor, ServerCallStreamObserver<Object> observer, Runnable handler) {
+			if (executor == null) {
+				handler.run();
+				return;
 			}
+			executor.execute(() -> {
+				if (observer.isCancelled()) {
+					return;
+				}
+				try {
+					handler.run();
+				}
+				catch (RuntimeException e) {
+					observer.onError(e);
+				}
+				catch (Throwable e) {
+					// Nothing else would close the call, and the client would hang
+					observer.onError(Status.INTERNAL.withCause(e).asRuntimeException());
+					if (e instanceof VirtualMachineError error) {
+						throw error;
+					}
+				}
+			});
+		}
 
-			@Override
-			public void onCompleted() {
-				obs.onCompleted();
-				this.sink.tryEmitComplete();
-			}
+		/**
+		 * Send the first item from the publisher as the single response of a call,
+		 * disposing of the subscription if the call is cancelled. If the publisher is
+		 * empty the call fails with {@link Status#INTERNAL}, unless the response type is
+		 * {@link Void} (in which case the response is an empty message).
+		 */
+		private static <O> void respond(Publisher<O> response, Class<?> responseType,
+				ServerCallStreamObserver<Object> observer) {
+			Mono<Optional<O>> empty = responseType == Void.class ? Mono.just(Optional.empty())
+					: Mono.error(() -> Status.INTERNAL.withDescription("No response").asRuntimeException());
+			Disposable subscription = Mono.from(response)
+				.map(Optional::of)
+				.switchIfEmpty(empty)
+				.subscribe(output -> {
+					observer.onNext(output.orElse(null));
+					observer.onCompleted();
+				}, observer::onError);
+			observer.setOnCancelHandler(subscription::dispose);
+		}
+
+		private FileDescriptor file(String serviceName) {
+			com.google.protobuf.Descriptors.ServiceDescriptor service = fileDescriptors.service(serviceName);
+			return service == null ? null : service.getFile();
+		}
 
+		private record Registration(Class<?> requestType, Class<?> responseType, Function<?, ?> function,
+				MethodType methodType, boolean async) {
 		}
 
 	}
 
+	private record ServerOptions(int prefetch, int maxBufferedBytes, boolean virtualThreads,
+			Supplier<Executor> virtualThreadExecutor, Set<String> virtualThreadMethods,
+			Map<String, ConcurrencyLimiter> concurrencyLimiters) {
+	}
+
 }
@@ -15,19 +15,25 @@
  */
 package org.springframework.grpc.reflect;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.reactivestreams.Publisher;
 
-import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Descriptors.ServiceDescriptor;
 
 import io.grpc.CallOptions;
 import io.grpc.Channel;
 import io.grpc.MethodDescriptor;
-import io.grpc.MethodDescriptor.Marshaller;
-import io.grpc.protobuf.ProtoUtils;
+import io.grpc.MethodDescriptor.MethodType;
 import io.grpc.stub.AbstractStub;
+import io.grpc.stub.ClientCallStreamObserver;
 import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ClientResponseObserver;
 import io.grpc.stub.StreamObserver;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 import reactor.core.publisher.Sinks.Many;
 
@@ -36,31 +42,119 @@ import reactor.core.publisher.Sinks.Many;
  * <p>
  * This stub extends {@link AbstractStub} and provides the ability to make gRPC calls
  * using reflection and dynamic method resolution, enabling flexible client interactions
- * with gRPC services.
+ * with gRPC services. The descriptors and marshallers for each method are resolved once
+ * and cached as a {@link DynamicMethod}, which can also be obtained up front with
+ * {@link #method(String)} and passed to the call methods directly, so there are no
+ * registry lookups per call. The cache is shared with the stubs that are derived from
+ * this one (e.g. with {@link #withDeadline(io.grpc.Deadline)}).
  *
  * @author Dave Syer
  * @since 1.0.0
  */
 public class DynamicStub extends AbstractStub<DynamicStub> {
 
+	/**
+	 * The number of client streaming requests pulled ahead of the transport.
+	 */
+	private static final int PREFETCH = 32;
+
 	private final MessageConverter converter;
 
 	private final DefaultDescriptorRegistry registry;
 
+	private final Map<MethodKey, DynamicMethod<?>> methods;
+
 	public DynamicStub(DefaultDescriptorRegistry registry, Channel channel) {
 		this(registry, channel, CallOptions.DEFAULT);
 	}
 
 	public DynamicStub(DefaultDescriptorRegistry registry, Channel channel, CallOptions callOptions) {
+		this(registry, channel, callOptions, new MessageConverter());
+	}
+
+	public DynamicStub(DefaultDescriptorRegistry registry, Channel channel, CallOptions callOptions,
+			MessageConverter converter) {
+		this(registry, channel, callOptions, converter, new ConcurrentHashMap<>());
+	}
+
+	private DynamicStub(DefaultDescriptorRegistry registry, Channel channel, CallOptions callOptions,
+			MessageConverter converter, Map<MethodKey, DynamicMethod<?>> methods) {
 		super(channel, callOptions);
 		this.registry = registry;
-		this.converter = new MessageConverter();
+		this.converter = converter;
+		this.methods = methods;
 	}
 
 	public static DynamicStub newStub(Channel channel) {
 		return new DynamicStub(new DefaultDescriptorRegistry(), channel);
 	}
 
+	/**
+	 * Resolve a handle for the method with the given name, using the Java type that is
+	 * registered for its output as the response type, and the method type from the
+	 * service descriptor (or unary if there is none).
+	 * @param fullMethodName the full name of the method (service/method)
+	 * @return a cached handle for the method
+	 * @throws IllegalArgumentException if the method is not registered
+	 */
+	public DynamicMethod<?> method(String fullMethodName) {
+		DescriptorMapping output = this.registry.output(fullMethodName);
+		if (output == null) {
+			throw new IllegalArgumentException("No descriptor found for output of method: " + fullMethodName);
+		}
+		return method(fullMethodName, output.type(), methodType(fullMethodName));
+	}
+
+	/**
+	 * Resolve a handle for the method with the given name and method type, converting
+	 * responses to the type provided.
+	 * @param <T> the response type
+	 * @param fullMethodName the full name of the method (service/method)
+	 * @param responseType the Java type of the response
+	 * @param methodType the gRPC method type
+	 * @return a cached handle for the method
+	 * @throws IllegalArgumentException if the method is not registered
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> DynamicMethod<T> method(String fullMethodName, Class<T> responseType, MethodType methodType) {
+		MethodKey key = new MethodKey(fullMethodName, responseType, methodType);
+		DynamicMethod<?> method = this.methods.get(key);
+		if (method == null) {
+			// Not computeIfAbsent because resolving can re-enter the registry
+			method = create(key);
+			DynamicMethod<?> existing = this.methods.putIfAbsent(key, method);
+			if (existing != null) {
+				method = existing;
+			}
+		}
+		return (DynamicMethod<T>) method;
+	}
+
+	private DynamicMethod<?> create(MethodKey key) {
+		DescriptorMapping input = this.registry.input(key.name());
+		if (input == null) {
+			throw new IllegalArgumentException("No descriptor found for input of method: " + key.name());
+		}
+		DescriptorMapping output = this.registry.output(key.name());
+		if (output == null) {
+			throw new IllegalArgumentException("No descriptor found for output of method: " + key.name());
+		}
+		return new DynamicMethod<>(key.name(), key.methodType(), input, output, key.responseType(), this.converter);
+	}
+
+	private MethodType methodType(String fullMethodName) {
+		ServiceDescriptor service = this.registry.service(MethodDescriptor.extractFullServiceName(fullMethodName));
+		com.google.protobuf.Descriptors.MethodDescriptor method = service == null ? null
+				: service.findMethodByName(MethodDescriptor.extractBareMethodName(fullMethodName));
+		if (method == null) {
+			return MethodType.UNARY;
+		}
+		if (method.isClientStreaming()) {
+			return method.isServerStreaming() ? MethodType.BIDI_STREAMING : MethodType.CLIENT_STREAMING;
+		}
+		return method.isServerStreaming() ? MethodType.SERVER_STREAMING : MethodType.UNARY;
+	}
+
 	public <S, T> Flux<T> bidi(String fullMethodName, Publisher<S> request, Class<T> responseType) {
 		if (request == null) {
 			throw new IllegalArgumentException("Request cannot be null");
@@ -68,15 +162,20 @@ public class DynamicStub extends AbstractStub<DynamicStub> {
 		if (responseType == null) {
 			throw new IllegalArgumentException("Response type cannot be null");
 		}
-		MethodDescriptor<DynamicMessage, DynamicMessage> methodDescriptor = methodDescriptor(fullMethodName,
-				MethodDescriptor.MethodType.BIDI_STREAMING);
+		return bidi(method(fullMethodName, responseType, MethodType.BIDI_STREAMING), request);
+	}
+
+	public <S, T> Flux<T> bidi(DynamicMethod<T> method, Publisher<S> request) {
+		if (request == null) {
+			throw new IllegalArgumentException("Request cannot be null");
+		}
 		Many<T> sink = Sinks.many().multicast().onBackpressureBuffer();
-		StreamObserver<DynamicMessage> requests = ClientCalls.asyncBidiStreamingCall(
-				getChannel().newCall(methodDescriptor, getCallOptions()), new StreamObserver<DynamicMessage>() {
+		StreamObserver<Object> requests = ClientCalls.asyncBidiStreamingCall(
+				getChannel().newCall(method.getMethodDescriptor(), getCallOptions()), new StreamObserver<T>() {
 
 					@Override
-					public void onNext(DynamicMessage value) {
-						sink.tryEmitNext(converter.convert(value, responseType));
+					public void onNext(T value) {
+						sink.tryEmitNext(value);
 					}
 
 					@Override
@@ -93,26 +192,89 @@ public class DynamicStub extends AbstractStub<DynamicStub> {
 		Flux.from(request)
 			.doOnComplete(() -> requests.onCompleted())
 			.doOnError(error -> requests.onError(error))
-			.doOnNext(msg -> requests
-				.onNext((DynamicMessage) converter.convert(msg, this.registry.output(fullMethodName).descriptor())))
+			.doOnNext(msg -> requests.onNext(msg))
 			.subscribe();
 		return sink.asFlux();
 	}
 
+	public <S, T> Mono<T> clientStream(String fullMethodName, Publisher<S> request, Class<T> responseType) {
+		if (request == null) {
+			throw new IllegalArgumentException("Request cannot be null");
+		}
+		if (responseType == null) {
+			throw new IllegalArgumentException("Response type cannot be null");
+		}
+		return clientStream(method(fullMethodName, responseType, MethodType.CLIENT_STREAMING), request);
+	}
+
+	/**
+	 * Call a client streaming method when the result is subscribed to. The requests are
+	 * only pulled from the publisher while the transport is ready to send them, so they
+	 * do not all have to be buffered, and if the subscriber cancels, the call is
+	 * cancelled too.
+	 * @param <S> the request type
+	 * @param <T> the response type
+	 * @param method the method to call
+	 * @param request the requests
+	 * @return the response
+	 */
+	public <S, T> Mono<T> clientStream(DynamicMethod<T> method, Publisher<S> request) {
+		if (request == null) {
+			throw new IllegalArgumentException("Request cannot be null");
+		}
+		return Mono.create(sink -> {
+			AtomicReference<CallStreamSubscriber<Object>> requests = new AtomicReference<>();
+			ClientCalls.asyncClientStreamingCall(getChannel().newCall(method.getMethodDescriptor(), getCallOptions()),
+					new ClientResponseObserver<Object, T>() {
+
+						@Override
+						public void beforeStart(ClientCallStreamObserver<Object> call) {
+							requests.set(new CallStreamSubscriber<>(call, PREFETCH));
+							sink.onCancel(() -> {
+								requests.get().cancel();
+								call.cancel("Cancelled by subscriber", null);
+							});
+						}
+
+						@Override
+						public void onNext(T value) {
+							sink.success(value);
+						}
+
+						@Override
+						public void onError(Throwable t) {
+							requests.get().cancel();
+							sink.error(t);
+						}
+
+						@Override
+						public void onCompleted() {
+							sink.success();
+						}
+
+					});
+			request.subscribe(requests.get());
+		});
+	}
+
 	public <T> Flux<T> stream(String fullMethodName, Object request, Class<T> responseType) {
 		if (request == null) {
 			throw new IllegalArgumentException("Request cannot be null");
 		}
-		MethodDescriptor<DynamicMessage, DynamicMessage> methodDescriptor = methodDescriptor(fullMethodName,
-				MethodDescriptor.MethodType.SERVER_STREAMING);
+		return stream(method(fullMethodName, responseType, MethodType.SERVER_STREAMING), request);
+	}
+
+	public <T> Flux<T> stream(DynamicMethod<T> method, Object request) {
+		if (request == null) {
+			throw new IllegalArgumentException("Request cannot be null");
+		}
 		Many<T> sink = Sinks.many().multicast().onBackpressureBuffer();
-		ClientCalls.asyncServerStreamingCall(getChannel().newCall(methodDescriptor, getCallOptions()),
-				(DynamicMessage) converter.convert(request, this.registry.input(fullMethodName).descriptor()),
-				new StreamObserver<DynamicMessage>() {
+		ClientCalls.asyncServerStreamingCall(getChannel().newCall(method.getMethodDescriptor(), getCallOptions()),
+				request, new StreamObserver<T>() {
 
 					@Override
-					public void onNext(DynamicMessage value) {
-						sink.tryEmitNext(converter.convert(value, responseType));
+					public void onNext(T value) {
+						sink.tryEmitNext(value);
 					}
 
 					@Override
@@ -133,38 +295,22 @@ public class DynamicStub extends AbstractStub<DynamicStub> {
 		if (request == null) {
 			throw new IllegalArgumentException("Request cannot be null");
 		}
-		MethodDescriptor<DynamicMessage, DynamicMessage> methodDescriptor = methodDescriptor(fullMethodName,
-				MethodDescriptor.MethodType.UNARY);
-		var response = ClientCalls.blockingUnaryCall(getChannel(), methodDescriptor, getCallOptions(),
-				(DynamicMessage) converter.convert(request, registry.input(fullMethodName).descriptor()));
-		return converter.convert(response, responseType);
+		return unary(method(fullMethodName, responseType, MethodType.UNARY), request);
 	}
 
-	private <T> MethodDescriptor<DynamicMessage, DynamicMessage> methodDescriptor(String fullMethodName,
-			MethodDescriptor.MethodType methodType) {
-		if (registry.input(fullMethodName) == null) {
-			throw new IllegalArgumentException("No descriptor found for input of method: " + fullMethodName);
-		}
-		if (registry.output(fullMethodName) == null) {
-			throw new IllegalArgumentException("No descriptor found for output of method: " + fullMethodName);
+	public <T> T unary(DynamicMethod<T> method, Object request) {
+		if (request == null) {
+			throw new IllegalArgumentException("Request cannot be null");
 		}
-		Marshaller<DynamicMessage> requestMarshaller = ProtoUtils
-			.marshaller(DynamicMessage.newBuilder(registry.input(fullMethodName).descriptor()).build());
-		Marshaller<DynamicMessage> responseMarshaller = ProtoUtils
-			.marshaller(DynamicMessage.newBuilder(registry.output(fullMethodName).descriptor()).build());
-		MethodDescriptor<DynamicMessage, DynamicMessage> methodDescriptor = MethodDescriptor
-			.<DynamicMessage, DynamicMessage>newBuilder()
-			.setType(methodType)
-			.setFullMethodName(fullMethodName)
-			.setRequestMarshaller(requestMarshaller)
-			.setResponseMarshaller(responseMarshaller)
-			.build();
-		return methodDescriptor;
+		return ClientCalls.blockingUnaryCall(getChannel(), method.getMethodDescriptor(), getCallOptions(), request);
 	}
 
 	@Override
 	protected DynamicStub build(Channel channel, CallOptions callOptions) {
-		return new DynamicStub(this.registry, channel, callOptions);
+		return new DynamicStub(this.registry, channel, callOptions, this.converter, this.methods);
+	}
+
+	private record MethodKey(String name, Class<?> responseType, MethodType methodType) {
 	}
 
 }
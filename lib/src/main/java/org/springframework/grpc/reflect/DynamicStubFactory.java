@@ -16,7 +16,10 @@
 package org.springframework.grpc.reflect;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import org.aopalliance.intercept.MethodInterceptor;
@@ -27,15 +30,20 @@ import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.grpc.client.StubFactory;
 import org.springframework.util.StringUtils;
 
+import io.grpc.CallOptions;
 import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor.MethodType;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
  * Factory for creating dynamic gRPC client stubs.
  * <p>
  * This factory implements {@link StubFactory} to provide dynamic stub creation
  * capabilities, allowing clients to interact with gRPC services without requiring
- * compile-time generated stub classes.
+ * compile-time generated stub classes. The interface methods of each proxy are bound to
+ * a {@link DynamicMethod} when it is created (or on first use if the method is not
+ * registered yet), so the calls do not need to look anything up.
  *
  * @author Dave Syer
  * @since 1.0.0
@@ -44,8 +52,15 @@ public class DynamicStubFactory implements StubFactory<Object> {
 
 	private final DefaultDescriptorRegistry descriptorRegistry;
 
+	private final MessageConverter converter;
+
 	public DynamicStubFactory(DefaultDescriptorRegistry descriptorRegistry) {
+		this(descriptorRegistry, new MessageConverter());
+	}
+
+	public DynamicStubFactory(DefaultDescriptorRegistry descriptorRegistry, MessageConverter converter) {
 		this.descriptorRegistry = descriptorRegistry;
+		this.converter = converter;
 	}
 
 	public static boolean supports(Class<?> type) {
@@ -54,13 +69,13 @@ public class DynamicStubFactory implements StubFactory<Object> {
 
 	@Override
 	public Object create(Supplier<ManagedChannel> channel, Class<?> type) {
-		DynamicStub stub = new DynamicStub(descriptorRegistry, channel.get());
+		DynamicStub stub = new DynamicStub(descriptorRegistry, channel.get(), CallOptions.DEFAULT, this.converter);
 		ProxyFactory proxyFactory = new ProxyFactory(stub);
 		proxyFactory.setTargetClass(type);
 		if (type.isInterface()) {
 			proxyFactory.setProxyTargetClass(false);
 		}
-		proxyFactory.addAdvice(new DynamicStubMethodInterceptor(stub));
+		proxyFactory.addAdvice(new DynamicStubMethodInterceptor(stub, type));
 		return proxyFactory.getProxy();
 	}
 
@@ -68,34 +83,73 @@ public class DynamicStubFactory implements StubFactory<Object> {
 
 		private final DynamicStub stub;
 
+		private final Map<Method, Binding> bindings = new ConcurrentHashMap<>();
+
 		public DynamicStubMethodInterceptor(DynamicStub stub) {
 			this.stub = stub;
 		}
 
+		DynamicStubMethodInterceptor(DynamicStub stub, Class<?> type) {
+			this(stub);
+			for (Method method : type.getMethods()) {
+				if (method.isDefault() || Modifier.isStatic(method.getModifiers())
+						|| method.getParameterCount() != 1) {
+					continue;
+				}
+				try {
+					this.bindings.put(method, bind(method));
+				}
+				catch (IllegalArgumentException e) {
+					// Not registered yet, so it will be bound on first use
+				}
+			}
+		}
+
 		@Override
 		public Object invoke(MethodInvocation invocation) throws Throwable {
 			if (invocation.getMethod().getDeclaringClass() == Object.class) {
 				return invocation.getMethod().invoke(this.stub, invocation.getArguments());
 			}
-			GrpcService client = AnnotationUtils.findAnnotation(invocation.getMethod().getDeclaringClass(),
-					GrpcService.class);
-			GrpcMapping mapping = AnnotationUtils.findAnnotation(invocation.getMethod(), GrpcMapping.class);
-			String methodName = service(client, invocation.getMethod().getDeclaringClass()) + "/"
-					+ method(mapping, invocation.getMethod());
-			Object[] arguments = invocation.getArguments();
-			if (Publisher.class.isAssignableFrom(invocation.getMethod().getReturnType())) {
-				Class<?> responseType = (Class<?>) ((ParameterizedType) (invocation.getMethod().getGenericReturnType()))
-					.getActualTypeArguments()[0];
-				if (Publisher.class.isAssignableFrom(invocation.getMethod().getParameterTypes()[0])) {
+			Binding binding = this.bindings.get(invocation.getMethod());
+			if (binding == null) {
+				binding = bind(invocation.getMethod());
+				this.bindings.putIfAbsent(invocation.getMethod(), binding);
+			}
+			Object argument = invocation.getArguments()[0];
+			switch (binding.kind()) {
+				case BIDI_STREAMING:
 					@SuppressWarnings({ "rawtypes", "unchecked" })
-					Flux<?> result = this.stub.bidi(methodName, (Publisher) arguments[0], responseType);
+					Flux<?> result = this.stub.bidi(binding.method(), (Publisher) argument);
 					return result;
+				case CLIENT_STREAMING:
+					@SuppressWarnings({ "rawtypes", "unchecked" })
+					Mono<?> response = this.stub.clientStream(binding.method(), (Publisher) argument);
+					return response;
+				case SERVER_STREAMING:
+					return this.stub.stream(binding.method(), argument);
+				default:
+					return this.stub.unary(binding.method(), argument);
+			}
+		}
+
+		private Binding bind(Method method) {
+			GrpcService client = AnnotationUtils.findAnnotation(method.getDeclaringClass(), GrpcService.class);
+			GrpcMapping mapping = AnnotationUtils.findAnnotation(method, GrpcMapping.class);
+			String methodName = service(client, method.getDeclaringClass()) + "/" + method(mapping, method);
+			MethodType kind = MethodType.UNARY;
+			Class<?> responseType = method.getReturnType();
+			if (Publisher.class.isAssignableFrom(method.getReturnType())) {
+				responseType = (Class<?>) ((ParameterizedType) (method.getGenericReturnType()))
+					.getActualTypeArguments()[0];
+				boolean streaming = Publisher.class.isAssignableFrom(method.getParameterTypes()[0]);
+				if (Mono.class.isAssignableFrom(method.getReturnType())) {
+					kind = streaming ? MethodType.CLIENT_STREAMING : MethodType.SERVER_STREAMING;
 				}
 				else {
-					return this.stub.stream(methodName, arguments[0], responseType);
+					kind = streaming ? MethodType.BIDI_STREAMING : MethodType.SERVER_STREAMING;
 				}
 			}
-			return this.stub.unary(methodName, arguments[0], invocation.getMethod().getReturnType());
+			return new Binding(kind, this.stub.method(methodName, responseType, kind));
 		}
 
 		private String method(GrpcMapping mapping, Method method) {
@@ -107,10 +161,13 @@ public class DynamicStubFactory implements StubFactory<Object> {
 		}
 
 		private String service(GrpcService client, Class<?> type) {
-			String service = client.service();
+			String service = client == null ? "" : client.service();
 			return service.isEmpty() ? type.getSimpleName() : service;
 		}
 
+		private record Binding(MethodType kind, DynamicMethod<?> method) {
+		}
+
 	}
 
 }
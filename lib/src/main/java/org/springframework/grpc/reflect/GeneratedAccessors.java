@@ -0,0 +1,136 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Factory for accessors that are spun as dedicated classes at runtime by the
+ * {@link LambdaMetafactory}, so that each property read or write is a direct,
+ * monomorphic invocation of the bean method instead of a reflective call. All methods
+ * return <code>null</code> if a class cannot be generated (e.g. if the target is not
+ * accessible), in which case the caller is expected to fall back to reflection (and the
+ * reason is logged at debug level).
+ *
+ * @author Dave Syer
+ * @since 1.0.0
+ */
+abstract class GeneratedAccessors {
+
+	private static final Log log = LogFactory.getLog(GeneratedAccessors.class);
+
+	private static final MethodType FUNCTION = MethodType.methodType(Function.class);
+
+	private static final MethodType BI_CONSUMER = MethodType.methodType(BiConsumer.class);
+
+	private static final MethodType SUPPLIER = MethodType.methodType(Supplier.class);
+
+	static Function<Object, Object> getter(Method method) {
+		if (method == null) {
+			return null;
+		}
+		try {
+			Lookup lookup = lookup(method.getDeclaringClass());
+			MethodHandle handle = lookup.unreflect(method);
+			CallSite site = LambdaMetafactory.metafactory(lookup, "apply", FUNCTION,
+					MethodType.methodType(Object.class, Object.class), handle,
+					MethodType.methodType(ClassUtils.resolvePrimitiveIfNecessary(method.getReturnType()),
+							method.getDeclaringClass()));
+			return instance(site);
+		}
+		catch (IllegalAccessException | LambdaConversionException | IllegalArgumentException
+				| SecurityException e) {
+			return fallback(method, e);
+		}
+	}
+
+	static BiConsumer<Object, Object> setter(Method method) {
+		if (method == null || method.getParameterCount() != 1) {
+			return null;
+		}
+		try {
+			Lookup lookup = lookup(method.getDeclaringClass());
+			MethodHandle handle = lookup.unreflect(method);
+			CallSite site = LambdaMetafactory.metafactory(lookup, "accept", BI_CONSUMER,
+					MethodType.methodType(void.class, Object.class, Object.class), handle,
+					MethodType.methodType(void.class, method.getDeclaringClass(),
+							ClassUtils.resolvePrimitiveIfNecessary(method.getParameterTypes()[0])));
+			return instance(site);
+		}
+		catch (IllegalAccessException | LambdaConversionException | IllegalArgumentException
+				| SecurityException e) {
+			return fallback(method, e);
+		}
+	}
+
+	static Supplier<Object> constructor(Constructor<?> constructor) {
+		if (constructor == null || constructor.getParameterCount() != 0) {
+			return null;
+		}
+		try {
+			Lookup lookup = lookup(constructor.getDeclaringClass());
+			MethodHandle handle = lookup.unreflectConstructor(constructor);
+			CallSite site = LambdaMetafactory.metafactory(lookup, "get", SUPPLIER, MethodType.methodType(Object.class),
+					handle, MethodType.methodType(constructor.getDeclaringClass()));
+			return instance(site);
+		}
+		catch (IllegalAccessException | LambdaConversionException | IllegalArgumentException
+				| SecurityException e) {
+			return fallback(constructor, e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T instance(CallSite site) {
+		try {
+			return (T) site.getTarget().invoke();
+		}
+		catch (RuntimeException | Error e) {
+			throw e;
+		}
+		catch (Throwable e) {
+			// The factory of a non-capturing lambda has no checked exceptions to throw
+			throw new IllegalStateException("Cannot create accessor", e);
+		}
+	}
+
+	private static <T> T fallback(Object member, Exception e) {
+		if (log.isDebugEnabled()) {
+			log.debug("Cannot generate accessor for " + member + ", falling back to reflection", e);
+		}
+		return null;
+	}
+
+	private static Lookup lookup(Class<?> type) throws IllegalAccessException {
+		return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+	}
+
+}
@@ -40,4 +40,28 @@ public @interface GrpcMapping {
 	@AliasFor("value")
 	String path() default "";
 
+	/**
+	 * Run the handler on a virtual thread (one per call), so that it can block, e.g. on
+	 * a database, without tying up a transport thread or a bounded pool. On a type, it
+	 * applies to all the methods. Requires Java 21 (unless the
+	 * {@link DynamicServiceFactory} is given a different executor).
+	 */
+	boolean virtualThreads() default false;
+
+	/**
+	 * The maximum number of concurrent calls to the method, above which calls fail fast
+	 * with <code>RESOURCE_EXHAUSTED</code>. The limit adapts to the observed latency
+	 * (see {@link ConcurrencyLimiter}), and this is its starting point and upper bound.
+	 * On a type, it applies to each of the methods separately. The default (0) means
+	 * there is no limit.
+	 */
+	int concurrencyLimit() default 0;
+
+	/**
+	 * The latency (in milliseconds) above which a call is taken as a sign of overload,
+	 * so the concurrency limit is reduced. Only used if there is a
+	 * {@link #concurrencyLimit()}.
+	 */
+	long latencyThreshold() default 1000;
+
 }
\ No newline at end of file
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.ExecutableMode;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotContribution;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.ClassUtils;
+
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.Descriptors.MethodDescriptor;
+import com.google.protobuf.Descriptors.ServiceDescriptor;
+
+/**
+ * AOT processor that computes the descriptors for all the {@link GrpcController} beans
+ * at build time, so that they do not have to be derived reflectively when the application
+ * starts. The descriptors are written to a {@link FileDescriptorSet} resource, which is
+ * loaded into the {@link DefaultDescriptorRegistry} at runtime (see
+ * {@link #register(DescriptorRegistry, ResourceLoader)}). Runtime hints are also
+ * registered for the controller methods and the message types, so that the conversion
+ * works in a native image.
+ * <p>
+ * Message types that were derived from Java classes (by the {@link DescriptorMapper})
+ * are copied into a single file per service, alongside the file that contains the
+ * service itself, so that the resource is self-contained.
+ *
+ * @author Dave Syer
+ * @since 1.0.0
+ */
+class GrpcMappingAotProcessor implements BeanFactoryInitializationAotProcessor {
+
+	static final String LOCATION = "META-INF/grpc/reflect/services.pb";
+
+	@Override
+	public BeanFactoryInitializationAotContribution processAheadOfTime(ConfigurableListableBeanFactory beanFactory) {
+		List<Class<?>> controllers = new ArrayList<>();
+		for (String name : beanFactory.getBeanDefinitionNames()) {
+			Class<?> type = beanFactory.getType(name, false);
+			if (type == null) {
+				continue;
+			}
+			type = ClassUtils.getUserClass(type);
+			if (type.isAnnotationPresent(GrpcController.class) && !controllers.contains(type)) {
+				controllers.add(type);
+			}
+		}
+		if (controllers.isEmpty()) {
+			return null;
+		}
+		DefaultDescriptorRegistry registry = new DefaultDescriptorRegistry();
+		DynamicServiceFactory factory = new DynamicServiceFactory(registry);
+		// The handlers are never called at build time (which might not be on Java 21)
+		factory.setVirtualThreadExecutor(Runnable::run);
+		Set<String> services = new LinkedHashSet<>();
+		for (Class<?> type : controllers) {
+			GrpcMappingRegistrar.service(factory, type, null).build();
+			services.add(GrpcMappingRegistrar.serviceName(type));
+		}
+		byte[] descriptors = descriptors(registry, services).toByteArray();
+		return (context, code) -> {
+			context.getGeneratedFiles().addResourceFile(LOCATION, new ByteArrayResource(descriptors));
+			RuntimeHints hints = context.getRuntimeHints();
+			hints.resources().registerPattern(LOCATION);
+			BindingReflectionHintsRegistrar bindings = new BindingReflectionHintsRegistrar();
+			for (Class<?> type : controllers) {
+				hints.reflection().registerType(type, MemberCategory.INVOKE_DECLARED_METHODS);
+				for (Method method : type.getDeclaredMethods()) {
+					if (method.isAnnotationPresent(GrpcMapping.class)) {
+						hints.reflection().registerMethod(method, ExecutableMode.INVOKE);
+						bindings.registerReflectionHints(hints.reflection(), method.getGenericParameterTypes());
+						bindings.registerReflectionHints(hints.reflection(), method.getGenericReturnType());
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Register the descriptors that were generated at build time (if there are any) with
+	 * the registry provided.
+	 */
+	static void register(DescriptorRegistry registry, ResourceLoader resourceLoader) {
+		BinaryDescriptorParser parser = new BinaryDescriptorParser();
+		parser.setResourceLoader(resourceLoader);
+		FileDescriptorSet files = parser.resolve(null, "classpath:" + LOCATION);
+		for (FileDescriptor file : new FileDescriptorManager().convert(files)) {
+			registry.register(file);
+		}
+	}
+
+	static FileDescriptorSet descriptors(DescriptorProvider registry, Set<String> services) {
+		Map<String, FileDescriptorProto> files = new LinkedHashMap<>();
+		for (String name : services) {
+			ServiceDescriptor service = registry.service(name);
+			if (service == null) {
+				continue;
+			}
+			FileDescriptor file = service.getFile();
+			FileDescriptorProto.Builder messages = FileDescriptorProto.newBuilder()
+				.setName(file.getName().replace(".proto", "") + "_messages.proto");
+			Set<String> dependencies = new LinkedHashSet<>();
+			Set<String> types = new HashSet<>();
+			for (MethodDescriptor method : service.getMethods()) {
+				for (Descriptor type : List.of(method.getInputType(), method.getOutputType())) {
+					if (type.getFile() != file) {
+						collect(type, messages, dependencies, types, files);
+					}
+				}
+			}
+			messages.addAllDependency(dependencies);
+			FileDescriptorProto.Builder proto = file.toProto().toBuilder().clearDependency();
+			proto.addAllDependency(dependencies);
+			proto.addDependency(messages.getName());
+			files.put(messages.getName(), messages.build());
+			files.put(proto.getName(), proto.build());
+		}
+		return FileDescriptorSet.newBuilder().addAllFile(files.values()).build();
+	}
+
+	private static void collect(Descriptor type, FileDescriptorProto.Builder messages, Set<String> dependencies,
+			Set<String> types, Map<String, FileDescriptorProto> files) {
+		while (type.getContainingType() != null) {
+			type = type.getContainingType();
+		}
+		FileDescriptor file = type.getFile();
+		if (!file.getName().isEmpty()) {
+			// A "real" file, e.g. from a .proto, can be copied as is
+			dependencies.add(file.getName());
+			include(file, files);
+			return;
+		}
+		if (!types.add(type.getFullName())) {
+			return;
+		}
+		messages.addMessageType(type.toProto());
+		collectFields(type, messages, dependencies, types, files);
+	}
+
+	private static void collectFields(Descriptor type, FileDescriptorProto.Builder messages,
+			Set<String> dependencies, Set<String> types, Map<String, FileDescriptorProto> files) {
+		for (FieldDescriptor field : type.getFields()) {
+			if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+				collect(field.getMessageType(), messages, dependencies, types, files);
+			}
+		}
+		for (Descriptor nested : type.getNestedTypes()) {
+			collectFields(nested, messages, dependencies, types, files);
+		}
+	}
+
+	private static void include(FileDescriptor file, Map<String, FileDescriptorProto> files) {
+		if (files.containsKey(file.getName())) {
+			return;
+		}
+		for (FileDescriptor dependency : file.getDependencies()) {
+			include(dependency, files);
+		}
+		files.put(file.getName(), file.toProto());
+	}
+
+}
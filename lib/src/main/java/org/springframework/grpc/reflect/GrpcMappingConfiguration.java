@@ -15,9 +15,15 @@
  */
 package org.springframework.grpc.reflect;
 
+import java.nio.file.Path;
+
+import org.springframework.aot.AotDetector;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.StringUtils;
 
 /**
  * Configuration class for gRPC method mapping functionality.
@@ -33,14 +39,41 @@ public class GrpcMappingConfiguration {
 
 	@Bean
 	@ConditionalOnMissingBean
-	DynamicServiceFactory grpcDynamicServiceFactory(DefaultDescriptorRegistry descriptorRegistry) {
-		return new DynamicServiceFactory(descriptorRegistry);
+	DynamicServiceFactory grpcDynamicServiceFactory(DefaultDescriptorRegistry descriptorRegistry,
+			MessageConverter grpcMessageConverter, Environment environment) {
+		DynamicServiceFactory factory = new DynamicServiceFactory(descriptorRegistry, grpcMessageConverter);
+		factory.setPrefetch(environment.getProperty("spring.grpc.reflect.server.prefetch", Integer.class,
+				DynamicServiceFactory.DEFAULT_PREFETCH));
+		factory.setMaxBufferedBytes(
+				environment.getProperty("spring.grpc.reflect.server.max-buffered-bytes", Integer.class, 0));
+		factory.setVirtualThreads(
+				environment.getProperty("spring.grpc.reflect.server.virtual-threads", Boolean.class, false));
+		return factory;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	MessageConverter grpcMessageConverter(Environment environment) {
+		MessageConverter converter = new MessageConverter();
+		converter.setGeneratedAccessors(
+				environment.getProperty("spring.grpc.reflect.converter.generated-accessors", Boolean.class, false));
+		converter.setLazyViews(
+				environment.getProperty("spring.grpc.reflect.converter.lazy-views", Boolean.class, false));
+		return converter;
 	}
 
 	@Bean
 	@ConditionalOnMissingBean
-	DefaultDescriptorRegistry grpcDescriptorRegistry() {
-		return new DefaultDescriptorRegistry();
+	DefaultDescriptorRegistry grpcDescriptorRegistry(ResourceLoader resourceLoader, Environment environment) {
+		String directory = environment.getProperty("spring.grpc.reflect.descriptor-cache.directory");
+		DescriptorMapper mapper = StringUtils.hasText(directory)
+				? new DefaultDescriptorMapper(new PersistentDescriptorCache(Path.of(directory)))
+				: DescriptorMapper.DEFAULT_INSTANCE;
+		DefaultDescriptorRegistry registry = new DefaultDescriptorRegistry(new DescriptorCatalog(), mapper);
+		if (AotDetector.useGeneratedArtifacts()) {
+			GrpcMappingAotProcessor.register(registry, resourceLoader);
+		}
+		return registry;
 	}
 
 }
@@ -16,6 +16,8 @@
 package org.springframework.grpc.reflect;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.config.BeanDefinition;
@@ -67,6 +69,41 @@ public class GrpcMappingRegistrar implements ImportBeanDefinitionRegistrar {
 		}
 	}
 
+	static String serviceName(Class<?> type) {
+		String serviceName = type.getAnnotation(GrpcController.class).value();
+		if (serviceName.isEmpty()) {
+			serviceName = type.getSimpleName();
+		}
+		return serviceName;
+	}
+
+	/**
+	 * Register all the {@link GrpcMapping} methods of a {@link GrpcController} type with
+	 * the factory. The instance is only used when a method is invoked, so it can be
+	 * <code>null</code> if the caller is only interested in the descriptors.
+	 */
+	static BindableServiceInstanceBuilder service(DynamicServiceFactory factory, Class<?> type, Object instance) {
+		BindableServiceInstanceBuilder service = factory.service(serviceName(type), instance);
+		List<Method> methods = new ArrayList<>();
+		for (Method method : type.getDeclaredMethods()) {
+			if (method.isAnnotationPresent(GrpcMapping.class)) {
+				methods.add(method);
+			}
+		}
+		// All the message types of the service can share a file
+		service.prepare(methods);
+		for (Method method : methods) {
+			GrpcMapping mapping = method.getAnnotation(GrpcMapping.class);
+			if (mapping.value().isEmpty()) {
+				service.method(method);
+			}
+			else {
+				service.method(method, mapping.value());
+			}
+		}
+		return service;
+	}
+
 	static class BindableServiceFactory {
 
 		private ObjectProvider<DynamicServiceFactory> factory;
@@ -76,23 +113,7 @@ public class GrpcMappingRegistrar implements ImportBeanDefinitionRegistrar {
 		}
 
 		public BindableService create(Object instance) {
-			String serviceName = instance.getClass().getAnnotation(GrpcController.class).value();
-			if (serviceName.isEmpty()) {
-				serviceName = instance.getClass().getSimpleName();
-			}
-			BindableServiceInstanceBuilder service = factory.getObject().service(serviceName, instance);
-			for (Method method : instance.getClass().getDeclaredMethods()) {
-				if (method.isAnnotationPresent(GrpcMapping.class)) {
-					GrpcMapping mapping = method.getAnnotation(GrpcMapping.class);
-					if (mapping.value().isEmpty()) {
-						service.method(method);
-					}
-					else {
-						service.method(method, mapping.value());
-					}
-				}
-			}
-			return service.build();
+			return service(factory.getObject(), instance.getClass(), instance).build();
 		}
 
 	}
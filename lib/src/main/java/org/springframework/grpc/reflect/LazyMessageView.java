@@ -0,0 +1,121 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.grpc.reflect.ConversionPlan.FieldPlan;
+import org.springframework.grpc.reflect.ConversionPlan.Kind;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+
+import io.grpc.Status;
+
+/**
+ * An {@link InvocationHandler} for a proxy that implements an interface by decoding the
+ * fields of a serialized message on demand. Nothing is decoded when the view is created,
+ * and each accessor scans the bytes for its own field the first time it is called, after
+ * which the value is memoized. Concurrent first calls may both decode the field, but
+ * they compute the same value, so the race is benign.
+ *
+ * @author Dave Syer
+ * @since 1.0.0
+ */
+final class LazyMessageView implements InvocationHandler {
+
+	private static final Object NULL = new Object();
+
+	private final ConversionPlan plan;
+
+	private final ByteString bytes;
+
+	private final MessageReader reader;
+
+	private final Map<FieldPlan, Object> values = new ConcurrentHashMap<>();
+
+	LazyMessageView(MessageConverter converter, ConversionPlan plan, ByteString bytes) {
+		this.plan = plan;
+		this.bytes = bytes;
+		this.reader = new MessageReader(converter);
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			switch (method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				default:
+					return this.plan.type().getSimpleName() + "[lazy, " + this.bytes.size() + " bytes]";
+			}
+		}
+		FieldPlan field = this.plan.accessor(method);
+		if (field == null) {
+			if (method.isDefault()) {
+				return InvocationHandler.invokeDefault(proxy, method, args);
+			}
+			return defaultValue(method.getReturnType());
+		}
+		Object value = this.values.get(field);
+		if (value == null) {
+			value = decode(field);
+			this.values.put(field, value == null ? NULL : value);
+		}
+		return value == NULL ? defaultValue(method.getReturnType()) : value;
+	}
+
+	private Object decode(FieldPlan field) {
+		try {
+			Object value = this.reader.readField(field, this.bytes.newCodedInput());
+			if (value == null && (field.kind() == Kind.LIST || field.kind() == Kind.MAP)) {
+				value = MessageReader.newContainer(field);
+			}
+			return value;
+		}
+		catch (IOException e) {
+			throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence")
+				.withCause(e)
+				.asRuntimeException();
+		}
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		return type.isPrimitive() && type != void.class ? Array.get(Array.newInstance(type, 1), 0) : null;
+	}
+
+	/**
+	 * The serialized bytes behind the value if it is a lazy view of a message with the
+	 * given descriptor (so it can be written back without being decoded), or
+	 * <code>null</code> otherwise.
+	 */
+	static ByteString bytes(Object value, Descriptor descriptor) {
+		if (Proxy.isProxyClass(value.getClass()) && Proxy.getInvocationHandler(value) instanceof LazyMessageView view
+				&& view.plan.descriptor() == descriptor) {
+			return view.bytes;
+		}
+		return null;
+	}
+
+}
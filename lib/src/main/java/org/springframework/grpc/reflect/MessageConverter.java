@@ -15,15 +15,18 @@
  */
 package org.springframework.grpc.reflect;
 
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.Method;
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.springframework.beans.BeanUtils;
-import org.springframework.util.ReflectionUtils;
+import org.springframework.core.CollectionFactory;
+import org.springframework.grpc.reflect.ConversionPlan.FieldPlan;
 
 import com.google.protobuf.AbstractMessage;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.DynamicMessage;
@@ -35,12 +38,54 @@ import com.google.protobuf.DynamicMessage.Builder;
  * This class provides conversion capabilities for gRPC message types, enabling seamless
  * integration between protocol buffer messages and other data representations used in
  * Spring applications.
+ * <p>
+ * The introspection needed to map a Java type onto a message descriptor is done once
+ * per (type, descriptor) pair and cached as an immutable {@link ConversionPlan}, so
+ * repeated conversions of the same types do not pay for reflective lookups. Records are
+ * supported by collecting the field values in the arguments of the canonical constructor
+ * and then invoking it once.
  *
  * @author Dave Syer
  * @since 1.0.0
  */
 public class MessageConverter {
 
+	private final Map<DescriptorMapping, ConversionPlan> plans = new ConcurrentHashMap<>();
+
+	private volatile boolean generatedAccessors;
+
+	private volatile boolean lazyViews;
+
+	/**
+	 * Flag to say that property accessors should be generated as dedicated classes at
+	 * runtime (via the {@link java.lang.invoke.LambdaMetafactory}) instead of being
+	 * invoked reflectively. Properties whose accessors cannot be generated still fall back
+	 * to reflection. Default is false.
+	 * @param generatedAccessors the flag value to set
+	 */
+	public void setGeneratedAccessors(boolean generatedAccessors) {
+		if (this.generatedAccessors != generatedAccessors) {
+			this.generatedAccessors = generatedAccessors;
+			this.plans.clear();
+		}
+	}
+
+	/**
+	 * Flag to say that messages converted to an interface type should be lazy views of
+	 * the serialized message, instead of being decoded up front. Each field is only
+	 * decoded (and then memoized) when its accessor is first called, which is cheaper for
+	 * large messages where only a few fields are ever used. Only interfaces can be viewed
+	 * lazily (other types are converted eagerly as before). Default is false.
+	 * @param lazyViews the flag value to set
+	 */
+	public void setLazyViews(boolean lazyViews) {
+		this.lazyViews = lazyViews;
+	}
+
+	public boolean isLazyViews() {
+		return this.lazyViews;
+	}
+
 	public <T> T convert(AbstractMessage message, Class<T> targetType) {
 		if (message == null || targetType == null || targetType == Void.class) {
 			return null;
@@ -48,63 +93,11 @@ public class MessageConverter {
 		if (targetType.isInstance(message)) {
 			return targetType.cast(message);
 		}
-		T instance = BeanUtils.instantiateClass(targetType);
-		for (PropertyDescriptor propertyDescriptor : BeanUtils.getPropertyDescriptors(targetType)) {
-			String propertyName = propertyDescriptor.getName();
-			if (Collection.class.isAssignableFrom(propertyDescriptor.getPropertyType())) {
-				@SuppressWarnings("unchecked")
-				Collection<Object> list = (Collection<Object>) ReflectionUtils
-					.invokeMethod(propertyDescriptor.getReadMethod(), instance);
-				if (list != null) {
-					@SuppressWarnings("unchecked")
-					Iterable<Object> messages = (Iterable<Object>) message
-						.getField(message.getDescriptorForType().findFieldByName(propertyName));
-					for (var item : messages) {
-						if (item instanceof AbstractMessage) {
-							FieldDescriptor field = message.getDescriptorForType().findFieldByName(propertyName);
-							item = convert((AbstractMessage) item, field.getMessageType());
-						}
-						else {
-							list.add(item);
-						}
-					}
-				}
-			}
-			else if (Map.class.isAssignableFrom(propertyDescriptor.getPropertyType())) {
-				@SuppressWarnings("unchecked")
-				Map<Object, Object> map = (Map<Object, Object>) ReflectionUtils
-					.invokeMethod(propertyDescriptor.getReadMethod(), instance);
-				if (map != null) {
-					@SuppressWarnings("unchecked")
-					Iterable<DynamicMessage> messages = (Iterable<DynamicMessage>) message
-						.getField(message.getDescriptorForType().findFieldByName(propertyName));
-					for (var entryMessage : messages) {
-						Object key = entryMessage.getField(entryMessage.getDescriptorForType().findFieldByName("key"));
-						Object value = entryMessage
-							.getField(entryMessage.getDescriptorForType().findFieldByName("value"));
-						if (value instanceof AbstractMessage) {
-							FieldDescriptor valueField = message.getDescriptorForType().findFieldByName(propertyName);
-							value = convert((AbstractMessage) value, valueField.getMessageType());
-						}
-						map.put(key, value);
-					}
-				}
-			}
-			if (propertyDescriptor.getWriteMethod() == null) {
-				continue;
-			}
-			FieldDescriptor field = message.getDescriptorForType().findFieldByName(propertyName);
-			if (field != null && message.hasField(field)) {
-				Object value = message.getField(message.getDescriptorForType().findFieldByName(propertyName));
-				if (value instanceof AbstractMessage) {
-					value = convert((AbstractMessage) value, propertyDescriptor.getPropertyType());
-				}
-				Method method = propertyDescriptor.getWriteMethod();
-				ReflectionUtils.makeAccessible(method);
-				ReflectionUtils.invokeMethod(method, instance, value);
-			}
+		if (isView(targetType)) {
+			return view(targetType, message.getDescriptorForType(), message.toByteString());
 		}
-		return instance;
+		ConversionPlan plan = plan(targetType, message.getDescriptorForType());
+		return targetType.cast(read(message, plan));
 	}
 
 	public <T> AbstractMessage convert(T value, Descriptor descriptor) {
@@ -132,35 +125,176 @@ public class MessageConverter {
 			}
 			return builder.build();
 		}
-		for (PropertyDescriptor propertyDescriptor : BeanUtils.getPropertyDescriptors(value.getClass())) {
-			String propertyName = propertyDescriptor.getName();
-			FieldDescriptor field = descriptor.findFieldByName(propertyName);
-			if (field != null) {
-				Method method = propertyDescriptor.getReadMethod();
-				ReflectionUtils.makeAccessible(method);
-				if (field.getType() == FieldDescriptor.Type.MESSAGE) {
-					Object nestedValue = ReflectionUtils.invokeMethod(method, value);
-					if (field.getMessageType().getOptions().getMapEntry()) {
-						// It's a map
-						@SuppressWarnings("unchecked")
-						var map = (Map<Object, Object>) nestedValue;
-						for (var entry : map.entrySet()) {
-							var entryMessage = convert(entry, field.getMessageType());
-							builder.addRepeatedField(field, entryMessage);
+		write(value, plan(value.getClass(), descriptor), builder);
+		return builder.build();
+	}
+
+	ConversionPlan plan(Class<?> type, Descriptor descriptor) {
+		DescriptorMapping key = new DescriptorMapping(type, descriptor);
+		ConversionPlan plan = this.plans.get(key);
+		if (plan == null) {
+			plan = this.plans.computeIfAbsent(key,
+					mapping -> ConversionPlan.create(mapping.type(), mapping.descriptor(), this.generatedAccessors));
+		}
+		return plan;
+	}
+
+	/**
+	 * Whether the target type would be converted to a lazy view.
+	 */
+	boolean isView(Class<?> type) {
+		return this.lazyViews && type.isInterface();
+	}
+
+	/**
+	 * Create a lazy view of the serialized message, implementing the target interface.
+	 */
+	<T> T view(Class<T> type, Descriptor descriptor, ByteString bytes) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				new LazyMessageView(this, plan(type, descriptor), bytes)));
+	}
+
+	private Object read(AbstractMessage message, ConversionPlan plan) {
+		Object target = plan.newTarget();
+		for (FieldPlan field : plan.fields()) {
+			FieldDescriptor descriptor = field.field();
+			switch (field.kind()) {
+				case LIST:
+					readList(message, field, target);
+					break;
+				case MAP:
+					readMap(message, field, target);
+					break;
+				case ARRAY:
+					readArray(message, field, target);
+					break;
+				case MESSAGE:
+					if (field.writable() && message.hasField(descriptor)) {
+						AbstractMessage nested = (AbstractMessage) message.getField(descriptor);
+						field.set(target, convert(nested, field.elementType()));
+					}
+					break;
+				default:
+					if (field.writable() && message.hasField(descriptor)) {
+						Object value = message.getField(descriptor);
+						if (value instanceof ByteString bytes && field.type() == byte[].class) {
+							value = bytes.toByteArray();
+						}
+						field.set(target, value);
+					}
+			}
+		}
+		return plan.build(target);
+	}
+
+	private void readList(AbstractMessage message, FieldPlan field, Object target) {
+		@SuppressWarnings("unchecked")
+		Collection<Object> list = (Collection<Object>) field.peek(target);
+		List<?> items = (List<?>) message.getField(field.field());
+		boolean created = false;
+		if (list == null) {
+			if (!field.writable()) {
+				return;
+			}
+			list = CollectionFactory.createCollection(field.type(), items.size());
+			created = true;
+		}
+		for (Object item : items) {
+			list.add(element(field, item));
+		}
+		if (created) {
+			field.set(target, list);
+		}
+	}
+
+	private void readMap(AbstractMessage message, FieldPlan field, Object target) {
+		@SuppressWarnings("unchecked")
+		Map<Object, Object> map = (Map<Object, Object>) field.peek(target);
+		List<?> entries = (List<?>) message.getField(field.field());
+		boolean created = false;
+		if (map == null) {
+			if (!field.writable()) {
+				return;
+			}
+			map = CollectionFactory.createMap(field.type(), entries.size());
+			created = true;
+		}
+		for (Object item : entries) {
+			AbstractMessage entry = (AbstractMessage) item;
+			map.put(entry.getField(field.key()), element(field, entry.getField(field.value())));
+		}
+		if (created) {
+			field.set(target, map);
+		}
+	}
+
+	private void readArray(AbstractMessage message, FieldPlan field, Object target) {
+		List<?> items = (List<?>) message.getField(field.field());
+		if (items.isEmpty() || !field.writable()) {
+			return;
+		}
+		Object array = Array.newInstance(field.elementType(), items.size());
+		for (int i = 0; i < items.size(); i++) {
+			Array.set(array, i, items.get(i));
+		}
+		field.set(target, array);
+	}
+
+	private Object element(FieldPlan field, Object item) {
+		if (item instanceof AbstractMessage nested && field.elementType() != null) {
+			return convert(nested, field.elementType());
+		}
+		return item;
+	}
+
+	private void write(Object value, ConversionPlan plan, Builder builder) {
+		for (FieldPlan field : plan.fields()) {
+			if (!field.readable()) {
+				continue;
+			}
+			Object fieldValue = field.get(value);
+			if (fieldValue == null) {
+				continue;
+			}
+			FieldDescriptor descriptor = field.field();
+			switch (field.kind()) {
+				case MAP:
+					for (Map.Entry<?, ?> entry : ((Map<?, ?>) fieldValue).entrySet()) {
+						Builder entryBuilder = DynamicMessage.newBuilder(descriptor.getMessageType());
+						entryBuilder.setField(field.key(), entry.getKey());
+						if (entry.getValue() != null) {
+							entryBuilder.setField(field.value(), element(field.value(), entry.getValue()));
+						}
+						builder.addRepeatedField(descriptor, entryBuilder.build());
+					}
+					break;
+				case LIST:
+					for (Object item : (Collection<?>) fieldValue) {
+						if (item != null) {
+							builder.addRepeatedField(descriptor, element(descriptor, item));
 						}
 					}
-					else {
-						AbstractMessage nestedMessage = convert(nestedValue, field.getMessageType());
-						builder.setField(field, nestedMessage);
+					break;
+				case ARRAY:
+					int length = Array.getLength(fieldValue);
+					for (int i = 0; i < length; i++) {
+						builder.addRepeatedField(descriptor, Array.get(fieldValue, i));
 					}
-				}
-				else {
-					Object fieldValue = ReflectionUtils.invokeMethod(method, value);
-					builder.setField(field, fieldValue);
-				}
+					break;
+				default:
+					builder.setField(descriptor, element(descriptor, fieldValue));
 			}
 		}
-		return builder.build();
+	}
+
+	private Object element(FieldDescriptor descriptor, Object value) {
+		if (descriptor.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+			return convert(value, descriptor.getMessageType());
+		}
+		if (value instanceof byte[] bytes) {
+			return ByteString.copyFrom(bytes);
+		}
+		return value;
 	}
 
 }
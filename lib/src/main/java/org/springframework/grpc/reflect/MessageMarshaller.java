@@ -0,0 +1,205 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.springframework.grpc.reflect.MessageWriter.Sizes;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
+
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor.Marshaller;
+import io.grpc.MethodDescriptor.ReflectableMarshaller;
+import io.grpc.Status;
+
+/**
+ * A gRPC {@link Marshaller} for plain Java objects that maps them onto a protobuf
+ * {@link Descriptor}. Outgoing messages are serialized directly from the object into the
+ * wire format, so there is no intermediate {@link DynamicMessage} and only a single pass
+ * over the object graph to compute its serialized size before it is written. Incoming
+ * messages are parsed directly from the wire format into the target type, unless that
+ * type is itself a protobuf message (or a supertype of {@link DynamicMessage}). If the
+ * {@link MessageConverter} is configured for lazy views, and the target type is an
+ * interface, the bytes are kept and only decoded field by field on demand.
+ *
+ * @param <T> the Java type of the message
+ * @author Dave Syer
+ * @since 1.0.0
+ */
+public class MessageMarshaller<T> implements ReflectableMarshaller<T> {
+
+	private static final int BUFFER_SIZE = 4096;
+
+	private final Class<T> type;
+
+	private final Descriptor descriptor;
+
+	private final MessageConverter converter;
+
+	private final MessageWriter writer;
+
+	private final MessageReader reader;
+
+	private final boolean dynamic;
+
+	public MessageMarshaller(Class<T> type, Descriptor descriptor, MessageConverter converter) {
+		this.type = type;
+		this.descriptor = descriptor;
+		this.converter = converter;
+		this.writer = new MessageWriter(converter);
+		this.reader = new MessageReader(converter);
+		this.dynamic = Message.class.isAssignableFrom(type) || type.isAssignableFrom(DynamicMessage.class);
+	}
+
+	public Descriptor getDescriptor() {
+		return this.descriptor;
+	}
+
+	@Override
+	public Class<T> getMessageClass() {
+		return this.type;
+	}
+
+	/**
+	 * The serialized size of a message, i.e. its size on the wire (if it was parsed
+	 * from the wire, then excluding any fields that were not mapped onto the target
+	 * type). This can be used to account for a message in a buffer, whichever thread it
+	 * is delivered on.
+	 * @param value the message (may be <code>null</code>)
+	 * @return the size in bytes
+	 */
+	int size(Object value) {
+		return value == null ? 0 : this.writer.size(value, this.descriptor, new Sizes());
+	}
+
+	@Override
+	public InputStream stream(T value) {
+		return new MessageInputStream(value);
+	}
+
+	@Override
+	public T parse(InputStream stream) {
+		try {
+			if (this.dynamic) {
+				return this.converter.convert(DynamicMessage.parseFrom(this.descriptor, stream), this.type);
+			}
+			if (this.converter.isView(this.type)) {
+				return this.converter.view(this.type, this.descriptor, ByteString.readFrom(stream));
+			}
+			return this.reader.read(this.type, this.descriptor, input(stream));
+		}
+		catch (IOException e) {
+			throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence")
+				.withCause(e)
+				.asRuntimeException();
+		}
+	}
+
+	private CodedInputStream input(InputStream stream) throws IOException {
+		if (stream instanceof KnownLength) {
+			// Read straight from the transport, with a buffer no bigger than the message,
+			// and a limit so that no nested length can claim more than the message has
+			int size = stream.available();
+			CodedInputStream input = CodedInputStream.newInstance(stream, Math.max(1, Math.min(size, BUFFER_SIZE)));
+			input.setSizeLimit(size);
+			input.pushLimit(size);
+			return input;
+		}
+		return CodedInputStream.newInstance(stream);
+	}
+
+	/**
+	 * An input stream that serializes its message lazily, writing straight to the
+	 * transport if it is drained, and only buffering the bytes if it is read.
+	 */
+	private class MessageInputStream extends InputStream implements Drainable, KnownLength {
+
+		private Object value;
+
+		private final Sizes sizes = new Sizes();
+
+		private final int size;
+
+		private ByteArrayInputStream partial;
+
+		MessageInputStream(Object value) {
+			this.value = value;
+			this.size = value == null ? 0 : writer.size(value, descriptor, this.sizes);
+		}
+
+		@Override
+		public int drainTo(OutputStream target) throws IOException {
+			int written = 0;
+			if (this.value != null) {
+				if (this.size > 0) {
+					CodedOutputStream output = CodedOutputStream.newInstance(target,
+							Math.min(this.size, CodedOutputStream.DEFAULT_BUFFER_SIZE));
+					writer.write(this.value, descriptor, output, this.sizes);
+					output.flush();
+				}
+				written = this.size;
+				this.value = null;
+			}
+			else if (this.partial != null) {
+				written = (int) this.partial.transferTo(target);
+				this.partial = null;
+			}
+			return written;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return buffer().read();
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			return buffer().read(bytes, offset, length);
+		}
+
+		@Override
+		public int available() throws IOException {
+			if (this.value != null) {
+				return this.size;
+			}
+			return this.partial != null ? this.partial.available() : 0;
+		}
+
+		private InputStream buffer() throws IOException {
+			if (this.value != null) {
+				byte[] bytes = new byte[this.size];
+				CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+				writer.write(this.value, descriptor, output, this.sizes);
+				output.checkNoSpaceLeft();
+				this.partial = new ByteArrayInputStream(bytes);
+				this.value = null;
+			}
+			return this.partial != null ? this.partial : InputStream.nullInputStream();
+		}
+
+	}
+
+}
@@ -0,0 +1,503 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.springframework.core.CollectionFactory;
+import org.springframework.grpc.reflect.ConversionPlan.FieldPlan;
+import org.springframework.grpc.reflect.ConversionPlan.Kind;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.WireFormat;
+
+/**
+ * Parses the protobuf wire format straight into plain Java objects, using the
+ * {@link ConversionPlan} for the target type and the source {@link Descriptor}, without
+ * creating an intermediate message. The input is read tag by tag, and each field is
+ * looked up by number in the plan and set on the target object. Fields that are unknown,
+ * or that do not map onto a property of the target type, are skipped without being
+ * decoded. The values set on the target are the same as the ones that
+ * {@link MessageConverter} would copy from a {@link DynamicMessage}.
+ *
+ * @author Dave Syer
+ * @since 1.0.0
+ */
+final class MessageReader {
+
+	private final MessageConverter converter;
+
+	MessageReader(MessageConverter converter) {
+		this.converter = converter;
+	}
+
+	/**
+	 * Read a complete message (until the end of the input, or the current limit) into an
+	 * instance of the target type.
+	 */
+	<T> T read(Class<T> type, Descriptor descriptor, CodedInputStream input) throws IOException {
+		if (type == Void.class) {
+			input.skipMessage();
+			return null;
+		}
+		return type.cast(read(this.converter.plan(type, descriptor), input));
+	}
+
+	private Object read(ConversionPlan plan, CodedInputStream input) throws IOException {
+		Partial message = new Partial(plan);
+		merge(message, input);
+		return finish(message);
+	}
+
+	/**
+	 * Read fields into a message that may already have some of them. Repeated fields
+	 * are accumulated, and so are nested messages (a singular message field that occurs
+	 * more than once is merged, as in any protobuf parser), so they are only set on the
+	 * target when the message is {@link #finish(Partial) finished}.
+	 */
+	private void merge(Partial message, CodedInputStream input) throws IOException {
+		ConversionPlan plan = message.plan;
+		Object target = message.target;
+		int tag;
+		while ((tag = input.readTag()) != 0) {
+			FieldPlan field = plan.field(WireFormat.getTagFieldNumber(tag));
+			if (field == null || !accepts(field, WireFormat.getTagWireType(tag))) {
+				input.skipField(tag);
+				continue;
+			}
+			switch (field.kind()) {
+				case ARRAY:
+					PrimitiveArray array = (PrimitiveArray) message.containers()
+						.computeIfAbsent(field, key -> new PrimitiveArray(key.elementType()));
+					readArray(field, tag, input, array);
+					break;
+				case MAP:
+				case LIST:
+					Object container = message.containers().computeIfAbsent(field, key -> container(key, target));
+					if (container == null) {
+						input.skipField(tag);
+					}
+					else {
+						readRepeated(field, tag, input, container);
+					}
+					break;
+				case MESSAGE:
+					if (!field.writable()) {
+						input.skipField(tag);
+					}
+					else if (isPlanned(field.elementType())) {
+						Partial nested = (Partial) message.containers()
+							.computeIfAbsent(field, key -> new Partial(
+									this.converter.plan(key.elementType(), key.field().getMessageType())));
+						int limit = input.pushLimit(input.readRawVarint32());
+						merge(nested, input);
+						input.checkLastTagWas(0);
+						input.popLimit(limit);
+					}
+					else {
+						// Concatenated encodings are parsed as a single merged message
+						ByteString bytes = input.readBytes();
+						Object previous = message.containers().get(field);
+						if (previous != null) {
+							bytes = ((ByteString) previous).concat(bytes);
+						}
+						message.containers().put(field, bytes);
+					}
+					break;
+				default:
+					Object value = readSingle(field, input);
+					if (field.writable()) {
+						field.set(target, value);
+					}
+			}
+		}
+	}
+
+	private Object finish(Partial message) throws IOException {
+		if (message.containers != null) {
+			for (Map.Entry<FieldPlan, Object> entry : message.containers.entrySet()) {
+				FieldPlan field = entry.getKey();
+				Object value = entry.getValue();
+				if (value instanceof PrimitiveArray array && field.writable()) {
+					field.set(message.target, array.toArray());
+				}
+				else if (value instanceof Partial nested) {
+					field.set(message.target, finish(nested));
+				}
+				else if (value instanceof ByteString bytes) {
+					field.set(message.target, readMessage(field.field(), field.elementType(), bytes));
+				}
+			}
+		}
+		return message.plan.build(message.target);
+	}
+
+	/**
+	 * Read the value of a single field from a complete message, skipping all the other
+	 * fields. Repeated fields are accumulated (in a new collection or array), a nested
+	 * message that occurs more than once is merged, and for any other singular field the
+	 * last value wins. Returns <code>null</code> if the field is not present.
+	 */
+	Object readField(FieldPlan field, CodedInputStream input) throws IOException {
+		int number = field.field().getNumber();
+		Object result = null;
+		int tag;
+		while ((tag = input.readTag()) != 0) {
+			if (WireFormat.getTagFieldNumber(tag) != number || !accepts(field, WireFormat.getTagWireType(tag))) {
+				input.skipField(tag);
+				continue;
+			}
+			switch (field.kind()) {
+				case ARRAY:
+					if (result == null) {
+						result = new PrimitiveArray(field.elementType());
+					}
+					readArray(field, tag, input, (PrimitiveArray) result);
+					break;
+				case MAP:
+				case LIST:
+					if (result == null) {
+						result = newContainer(field);
+					}
+					readRepeated(field, tag, input, result);
+					break;
+				case MESSAGE:
+					ByteString bytes = input.readBytes();
+					result = result == null ? bytes : ((ByteString) result).concat(bytes);
+					break;
+				default:
+					result = readSingle(field, input);
+			}
+		}
+		if (result instanceof ByteString bytes && field.kind() == Kind.MESSAGE) {
+			return readMessage(field.field(), field.elementType(), bytes);
+		}
+		return result instanceof PrimitiveArray array ? array.toArray() : result;
+	}
+
+	private Object readSingle(FieldPlan field, CodedInputStream input) throws IOException {
+		FieldDescriptor descriptor = field.field();
+		if (field.type() == byte[].class && descriptor.getType() == FieldDescriptor.Type.BYTES) {
+			return input.readByteArray();
+		}
+		return readValue(descriptor, field.elementType(), input);
+	}
+
+	private void readRepeated(FieldPlan field, int tag, CodedInputStream input, Object container)
+			throws IOException {
+		FieldDescriptor descriptor = field.field();
+		if (field.kind() == Kind.MAP) {
+			readEntry(field, input, container);
+		}
+		else if (WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED
+				&& descriptor.isPackable()) {
+			readPacked(field, input, container);
+		}
+		else {
+			add(container, readValue(descriptor, field.elementType(), input));
+		}
+	}
+
+	private void readArray(FieldPlan field, int tag, CodedInputStream input, PrimitiveArray array)
+			throws IOException {
+		FieldDescriptor.Type type = field.field().getType();
+		if (WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+			// The declared length is not trusted to size the array, it only grows as
+			// elements are actually read
+			int limit = input.pushLimit(input.readRawVarint32());
+			while (input.getBytesUntilLimit() > 0) {
+				array.read(type, input);
+			}
+			input.popLimit(limit);
+		}
+		else {
+			array.read(type, input);
+		}
+	}
+
+	private void readPacked(FieldPlan field, CodedInputStream input, Object container) throws IOException {
+		int limit = input.pushLimit(input.readRawVarint32());
+		while (input.getBytesUntilLimit() > 0) {
+			add(container, readValue(field.field(), null, input));
+		}
+		input.popLimit(limit);
+	}
+
+	private void readEntry(FieldPlan field, CodedInputStream input, Object container) throws IOException {
+		int limit = input.pushLimit(input.readRawVarint32());
+		FieldDescriptor keyDescriptor = field.key();
+		FieldDescriptor valueDescriptor = field.value();
+		Object key = null;
+		Object value = null;
+		int tag;
+		while ((tag = input.readTag()) != 0) {
+			int number = WireFormat.getTagFieldNumber(tag);
+			if (number == keyDescriptor.getNumber()) {
+				key = readValue(keyDescriptor, null, input);
+			}
+			else if (number == valueDescriptor.getNumber()) {
+				value = readValue(valueDescriptor, field.elementType(), input);
+			}
+			else {
+				input.skipField(tag);
+			}
+		}
+		input.popLimit(limit);
+		if (key == null) {
+			key = keyDescriptor.getDefaultValue();
+		}
+		if (value == null) {
+			value = valueDescriptor.getJavaType() == FieldDescriptor.JavaType.MESSAGE
+					? this.converter.convert(DynamicMessage.getDefaultInstance(valueDescriptor.getMessageType()),
+							field.elementType())
+					: valueDescriptor.getDefaultValue();
+		}
+		@SuppressWarnings("unchecked")
+		Map<Object, Object> map = (Map<Object, Object>) container;
+		map.put(key, value);
+	}
+
+	/**
+	 * Read a single value (without its tag). Nested messages are read into the target
+	 * type if there is one, or else into a {@link DynamicMessage}.
+	 */
+	private Object readValue(FieldDescriptor descriptor, Class<?> target, CodedInputStream input)
+			throws IOException {
+		switch (descriptor.getType()) {
+			case DOUBLE:
+				return input.readDouble();
+			case FLOAT:
+				return input.readFloat();
+			case INT64:
+				return input.readInt64();
+			case UINT64:
+				return input.readUInt64();
+			case INT32:
+				return input.readInt32();
+			case FIXED64:
+				return input.readFixed64();
+			case FIXED32:
+				return input.readFixed32();
+			case BOOL:
+				return input.readBool();
+			case STRING:
+				return input.readStringRequireUtf8();
+			case BYTES:
+				return input.readBytes();
+			case UINT32:
+				return input.readUInt32();
+			case ENUM:
+				return descriptor.getEnumType().findValueByNumberCreatingIfUnknown(input.readEnum());
+			case SFIXED32:
+				return input.readSFixed32();
+			case SFIXED64:
+				return input.readSFixed64();
+			case SINT32:
+				return input.readSInt32();
+			case SINT64:
+				return input.readSInt64();
+			case MESSAGE:
+				if (target == null || target.isAssignableFrom(DynamicMessage.class)) {
+					return DynamicMessage.parseFrom(descriptor.getMessageType(), input.readBytes());
+				}
+				if (this.converter.isView(target)) {
+					return this.converter.view(target, descriptor.getMessageType(), input.readBytes());
+				}
+				int limit = input.pushLimit(input.readRawVarint32());
+				Object result = read(this.converter.plan(target, descriptor.getMessageType()), input);
+				input.checkLastTagWas(0);
+				input.popLimit(limit);
+				return result;
+			default:
+				throw new UnsupportedOperationException("Unsupported field type: " + descriptor.getType());
+		}
+	}
+
+	/**
+	 * Read a nested message from its (possibly concatenated) encoding.
+	 */
+	private Object readMessage(FieldDescriptor descriptor, Class<?> target, ByteString bytes) throws IOException {
+		if (target == null || target.isAssignableFrom(DynamicMessage.class)) {
+			return DynamicMessage.parseFrom(descriptor.getMessageType(), bytes);
+		}
+		if (this.converter.isView(target)) {
+			return this.converter.view(target, descriptor.getMessageType(), bytes);
+		}
+		return read(this.converter.plan(target, descriptor.getMessageType()), bytes.newCodedInput());
+	}
+
+	/**
+	 * Whether nested messages of the target type are read with a {@link ConversionPlan}
+	 * (as opposed to being parsed as a {@link DynamicMessage} or a lazy view).
+	 */
+	private boolean isPlanned(Class<?> target) {
+		return target != null && !target.isAssignableFrom(DynamicMessage.class) && !this.converter.isView(target);
+	}
+
+	/**
+	 * Check that the wire type is the one expected for the field (or a packed encoding
+	 * of a repeated scalar).
+	 */
+	private boolean accepts(FieldPlan field, int wireType) {
+		FieldDescriptor descriptor = field.field();
+		if (wireType == descriptor.getLiteType().getWireType()) {
+			return true;
+		}
+		return wireType == WireFormat.WIRETYPE_LENGTH_DELIMITED && descriptor.isPackable();
+	}
+
+	private Object container(FieldPlan field, Object target) {
+		Object container = field.peek(target);
+		if (container == null && field.writable()) {
+			container = newContainer(field);
+			field.set(target, container);
+		}
+		return container;
+	}
+
+	static Object newContainer(FieldPlan field) {
+		return field.kind() == Kind.MAP ? CollectionFactory.createMap(field.type(), 16)
+				: CollectionFactory.createCollection(field.type(), 16);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void add(Object container, Object value) {
+		((Collection<Object>) container).add(value);
+	}
+
+	/**
+	 * A message that is being read, with the containers for the fields that are
+	 * accumulated until it is finished.
+	 */
+	private static final class Partial {
+
+		private final ConversionPlan plan;
+
+		private final Object target;
+
+		private Map<FieldPlan, Object> containers;
+
+		Partial(ConversionPlan plan) {
+			this.plan = plan;
+			this.target = plan.newTarget();
+		}
+
+		Map<FieldPlan, Object> containers() {
+			if (this.containers == null) {
+				this.containers = new IdentityHashMap<>();
+			}
+			return this.containers;
+		}
+
+	}
+
+	/**
+	 * A growable array of primitives that the elements of a repeated field are read into
+	 * without boxing.
+	 */
+	private static final class PrimitiveArray {
+
+		private final Class<?> type;
+
+		private Object values;
+
+		private int size;
+
+		PrimitiveArray(Class<?> type) {
+			this.type = type;
+			this.values = Array.newInstance(type, 16);
+		}
+
+		private void ensureCapacity() {
+			int length = Array.getLength(this.values);
+			if (this.size == length) {
+				Object values = Array.newInstance(this.type, length * 2);
+				System.arraycopy(this.values, 0, values, 0, this.size);
+				this.values = values;
+			}
+		}
+
+		void read(FieldDescriptor.Type fieldType, CodedInputStream input) throws IOException {
+			ensureCapacity();
+			if (this.values instanceof double[] values) {
+				values[this.size++] = input.readDouble();
+			}
+			else if (this.values instanceof float[] values) {
+				values[this.size++] = input.readFloat();
+			}
+			else if (this.values instanceof boolean[] values) {
+				values[this.size++] = input.readBool();
+			}
+			else if (this.values instanceof int[] values) {
+				values[this.size++] = (int) readIntegral(fieldType, input);
+			}
+			else if (this.values instanceof long[] values) {
+				values[this.size++] = readIntegral(fieldType, input);
+			}
+			else {
+				throw new IllegalStateException("Unsupported array type: " + this.type);
+			}
+		}
+
+		Object toArray() {
+			if (this.size == Array.getLength(this.values)) {
+				return this.values;
+			}
+			Object result = Array.newInstance(this.type, this.size);
+			System.arraycopy(this.values, 0, result, 0, this.size);
+			return result;
+		}
+
+		private static long readIntegral(FieldDescriptor.Type type, CodedInputStream input) throws IOException {
+			switch (type) {
+				case INT32:
+					return input.readInt32();
+				case UINT32:
+					return input.readUInt32();
+				case SINT32:
+					return input.readSInt32();
+				case ENUM:
+					return input.readEnum();
+				case FIXED32:
+					return input.readFixed32();
+				case SFIXED32:
+					return input.readSFixed32();
+				case INT64:
+					return input.readInt64();
+				case UINT64:
+					return input.readUInt64();
+				case SINT64:
+					return input.readSInt64();
+				case FIXED64:
+					return input.readFixed64();
+				case SFIXED64:
+					return input.readSFixed64();
+				default:
+					throw new IllegalStateException("Unsupported field type for integral array: " + type);
+			}
+		}
+
+	}
+
+}
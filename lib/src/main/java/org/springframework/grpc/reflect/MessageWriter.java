@@ -0,0 +1,576 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import org.springframework.grpc.reflect.ConversionPlan.FieldPlan;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.WireFormat;
+
+/**
+ * Serializes plain Java objects straight into the protobuf wire format, using the
+ * {@link ConversionPlan} for the object type and the target {@link Descriptor}, without
+ * creating an intermediate message. Serialization happens in two passes: the first
+ * computes the sizes of all the nested (length-delimited) values and records them in a
+ * {@link Sizes} in the order they are encountered, and the second writes the fields,
+ * consuming the sizes in the same order.
+ *
+ * @author Dave Syer
+ * @since 1.0.0
+ */
+final class MessageWriter {
+
+	private final MessageConverter converter;
+
+	MessageWriter(MessageConverter converter) {
+		this.converter = converter;
+	}
+
+	/**
+	 * Compute the serialized size of the value (excluding any tag or length prefix),
+	 * recording the sizes of nested values in the sizes provided.
+	 */
+	int size(Object value, Descriptor descriptor, Sizes sizes) {
+		if (value instanceof MessageLite message) {
+			return message.getSerializedSize();
+		}
+		ByteString bytes = LazyMessageView.bytes(value, descriptor);
+		if (bytes != null) {
+			return bytes.size();
+		}
+		return size(this.converter.plan(value.getClass(), descriptor), value, sizes);
+	}
+
+	/**
+	 * Write the value to the output, consuming nested sizes from a {@link Sizes} that was
+	 * previously populated by {@link #size(Object, Descriptor, Sizes)}.
+	 */
+	void write(Object value, Descriptor descriptor, CodedOutputStream output, Sizes sizes) throws IOException {
+		if (value instanceof MessageLite message) {
+			message.writeTo(output);
+			return;
+		}
+		ByteString bytes = LazyMessageView.bytes(value, descriptor);
+		if (bytes != null) {
+			output.writeRawBytes(bytes);
+			return;
+		}
+		write(this.converter.plan(value.getClass(), descriptor), value, output, sizes);
+	}
+
+	private int size(ConversionPlan plan, Object value, Sizes sizes) {
+		int size = 0;
+		for (FieldPlan field : plan.fields()) {
+			if (!field.readable()) {
+				continue;
+			}
+			Object fieldValue = field.get(value);
+			if (fieldValue == null) {
+				continue;
+			}
+			FieldDescriptor descriptor = field.field();
+			switch (field.kind()) {
+				case MAP:
+					for (Map.Entry<?, ?> entry : ((Map<?, ?>) fieldValue).entrySet()) {
+						int index = sizes.reserve();
+						int entrySize = entrySize(field, entry, sizes);
+						sizes.set(index, entrySize);
+						size += CodedOutputStream.computeTagSize(descriptor.getNumber())
+								+ CodedOutputStream.computeUInt32SizeNoTag(entrySize) + entrySize;
+					}
+					break;
+				case LIST:
+					size += repeatedSize(descriptor, (Collection<?>) fieldValue, sizes);
+					break;
+				case ARRAY:
+					size += arraySize(descriptor, fieldValue, sizes);
+					break;
+				default:
+					if (!isDefault(descriptor, fieldValue)) {
+						size += CodedOutputStream.computeTagSize(descriptor.getNumber())
+								+ valueSize(descriptor, fieldValue, sizes);
+					}
+			}
+		}
+		return size;
+	}
+
+	private void write(ConversionPlan plan, Object value, CodedOutputStream output, Sizes sizes) throws IOException {
+		for (FieldPlan field : plan.fields()) {
+			if (!field.readable()) {
+				continue;
+			}
+			Object fieldValue = field.get(value);
+			if (fieldValue == null) {
+				continue;
+			}
+			FieldDescriptor descriptor = field.field();
+			switch (field.kind()) {
+				case MAP:
+					for (Map.Entry<?, ?> entry : ((Map<?, ?>) fieldValue).entrySet()) {
+						output.writeTag(descriptor.getNumber(), WireFormat.WIRETYPE_LENGTH_DELIMITED);
+						output.writeUInt32NoTag(sizes.next());
+						writeEntry(field, entry, output, sizes);
+					}
+					break;
+				case LIST:
+					writeRepeated(descriptor, (Collection<?>) fieldValue, output, sizes);
+					break;
+				case ARRAY:
+					writeArray(descriptor, fieldValue, output, sizes);
+					break;
+				default:
+					if (!isDefault(descriptor, fieldValue)) {
+						output.writeTag(descriptor.getNumber(), descriptor.getLiteType().getWireType());
+						writeValue(descriptor, fieldValue, output, sizes);
+					}
+			}
+		}
+	}
+
+	private int entrySize(FieldPlan field, Map.Entry<?, ?> entry, Sizes sizes) {
+		int size = 0;
+		if (entry.getKey() != null) {
+			size += CodedOutputStream.computeTagSize(field.key().getNumber())
+					+ valueSize(field.key(), entry.getKey(), sizes);
+		}
+		if (entry.getValue() != null) {
+			size += CodedOutputStream.computeTagSize(field.value().getNumber())
+					+ valueSize(field.value(), entry.getValue(), sizes);
+		}
+		return size;
+	}
+
+	private void writeEntry(FieldPlan field, Map.Entry<?, ?> entry, CodedOutputStream output, Sizes sizes)
+			throws IOException {
+		if (entry.getKey() != null) {
+			output.writeTag(field.key().getNumber(), field.key().getLiteType().getWireType());
+			writeValue(field.key(), entry.getKey(), output, sizes);
+		}
+		if (entry.getValue() != null) {
+			output.writeTag(field.value().getNumber(), field.value().getLiteType().getWireType());
+			writeValue(field.value(), entry.getValue(), output, sizes);
+		}
+	}
+
+	private int repeatedSize(FieldDescriptor descriptor, Collection<?> values, Sizes sizes) {
+		if (values.isEmpty()) {
+			return 0;
+		}
+		if (descriptor.isPacked()) {
+			int index = sizes.reserve();
+			int payload = 0;
+			for (Object value : values) {
+				if (value != null) {
+					payload += valueSize(descriptor, value, sizes);
+				}
+			}
+			sizes.set(index, payload);
+			return CodedOutputStream.computeTagSize(descriptor.getNumber())
+					+ CodedOutputStream.computeUInt32SizeNoTag(payload) + payload;
+		}
+		int size = 0;
+		int tag = CodedOutputStream.computeTagSize(descriptor.getNumber());
+		for (Object value : values) {
+			if (value != null) {
+				size += tag + valueSize(descriptor, value, sizes);
+			}
+		}
+		return size;
+	}
+
+	private void writeRepeated(FieldDescriptor descriptor, Collection<?> values, CodedOutputStream output,
+			Sizes sizes) throws IOException {
+		if (values.isEmpty()) {
+			return;
+		}
+		if (descriptor.isPacked()) {
+			output.writeTag(descriptor.getNumber(), WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			output.writeUInt32NoTag(sizes.next());
+			for (Object value : values) {
+				if (value != null) {
+					writeValue(descriptor, value, output, sizes);
+				}
+			}
+			return;
+		}
+		int wireType = descriptor.getLiteType().getWireType();
+		for (Object value : values) {
+			if (value != null) {
+				output.writeTag(descriptor.getNumber(), wireType);
+				writeValue(descriptor, value, output, sizes);
+			}
+		}
+	}
+
+	/**
+	 * The size of a primitive array (including tags), computed without boxing the
+	 * elements.
+	 */
+	private int arraySize(FieldDescriptor descriptor, Object array, Sizes sizes) {
+		int length = Array.getLength(array);
+		if (length == 0) {
+			return 0;
+		}
+		int tag = CodedOutputStream.computeTagSize(descriptor.getNumber());
+		if (descriptor.isPacked()) {
+			int index = sizes.reserve();
+			int payload = arrayPayloadSize(descriptor.getType(), array, length);
+			sizes.set(index, payload);
+			return tag + CodedOutputStream.computeUInt32SizeNoTag(payload) + payload;
+		}
+		return tag * length + arrayPayloadSize(descriptor.getType(), array, length);
+	}
+
+	private int arrayPayloadSize(FieldDescriptor.Type type, Object array, int length) {
+		switch (type) {
+			case DOUBLE:
+			case FIXED64:
+			case SFIXED64:
+				return length * 8;
+			case FLOAT:
+			case FIXED32:
+			case SFIXED32:
+				return length * 4;
+			case BOOL:
+				return length;
+			default:
+				break;
+		}
+		int size = 0;
+		if (array instanceof int[] values) {
+			for (int value : values) {
+				size += varintSize(type, value);
+			}
+		}
+		else if (array instanceof long[] values) {
+			for (long value : values) {
+				size += varintSize(type, value);
+			}
+		}
+		else {
+			// The element type is checked against the field type when the plan is created
+			throw new IllegalStateException(
+					"Unsupported array type " + array.getClass().getSimpleName() + " for field type: " + type);
+		}
+		return size;
+	}
+
+	private void writeArray(FieldDescriptor descriptor, Object array, CodedOutputStream output, Sizes sizes)
+			throws IOException {
+		if (Array.getLength(array) == 0) {
+			return;
+		}
+		boolean packed = descriptor.isPacked();
+		if (packed) {
+			output.writeTag(descriptor.getNumber(), WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			output.writeUInt32NoTag(sizes.next());
+		}
+		int number = descriptor.getNumber();
+		int wireType = descriptor.getLiteType().getWireType();
+		FieldDescriptor.Type type = descriptor.getType();
+		if (array instanceof double[] values) {
+			for (double value : values) {
+				if (!packed) {
+					output.writeTag(number, wireType);
+				}
+				output.writeDoubleNoTag(value);
+			}
+		}
+		else if (array instanceof float[] values) {
+			for (float value : values) {
+				if (!packed) {
+					output.writeTag(number, wireType);
+				}
+				output.writeFloatNoTag(value);
+			}
+		}
+		else if (array instanceof boolean[] values) {
+			for (boolean value : values) {
+				if (!packed) {
+					output.writeTag(number, wireType);
+				}
+				output.writeBoolNoTag(value);
+			}
+		}
+		else if (array instanceof int[] values) {
+			for (int value : values) {
+				if (!packed) {
+					output.writeTag(number, wireType);
+				}
+				writeIntegral(type, value, output);
+			}
+		}
+		else if (array instanceof long[] values) {
+			for (long value : values) {
+				if (!packed) {
+					output.writeTag(number, wireType);
+				}
+				writeIntegral(type, value, output);
+			}
+		}
+		else {
+			throw new IllegalStateException("Unsupported array type: " + array.getClass().getSimpleName());
+		}
+	}
+
+	private static int varintSize(FieldDescriptor.Type type, long value) {
+		switch (type) {
+			case INT32:
+				return CodedOutputStream.computeInt32SizeNoTag((int) value);
+			case UINT32:
+				return CodedOutputStream.computeUInt32SizeNoTag((int) value);
+			case SINT32:
+				return CodedOutputStream.computeSInt32SizeNoTag((int) value);
+			case ENUM:
+				return CodedOutputStream.computeEnumSizeNoTag((int) value);
+			case INT64:
+				return CodedOutputStream.computeInt64SizeNoTag(value);
+			case UINT64:
+				return CodedOutputStream.computeUInt64SizeNoTag(value);
+			case SINT64:
+				return CodedOutputStream.computeSInt64SizeNoTag(value);
+			default:
+				throw new IllegalStateException("Unsupported field type for integral array: " + type);
+		}
+	}
+
+	private static void writeIntegral(FieldDescriptor.Type type, long value, CodedOutputStream output)
+			throws IOException {
+		switch (type) {
+			case INT32:
+				output.writeInt32NoTag((int) value);
+				break;
+			case UINT32:
+				output.writeUInt32NoTag((int) value);
+				break;
+			case SINT32:
+				output.writeSInt32NoTag((int) value);
+				break;
+			case ENUM:
+				output.writeEnumNoTag((int) value);
+				break;
+			case FIXED32:
+				output.writeFixed32NoTag((int) value);
+				break;
+			case SFIXED32:
+				output.writeSFixed32NoTag((int) value);
+				break;
+			case INT64:
+				output.writeInt64NoTag(value);
+				break;
+			case UINT64:
+				output.writeUInt64NoTag(value);
+				break;
+			case SINT64:
+				output.writeSInt64NoTag(value);
+				break;
+			case FIXED64:
+				output.writeFixed64NoTag(value);
+				break;
+			case SFIXED64:
+				output.writeSFixed64NoTag(value);
+				break;
+			default:
+				throw new IllegalStateException("Unsupported field type for integral array: " + type);
+		}
+	}
+
+	/**
+	 * The size of a single value without its tag, but including the length prefix if it
+	 * is length-delimited.
+	 */
+	private int valueSize(FieldDescriptor descriptor, Object value, Sizes sizes) {
+		switch (descriptor.getType()) {
+			case DOUBLE:
+				return CodedOutputStream.computeDoubleSizeNoTag(((Number) value).doubleValue());
+			case FLOAT:
+				return CodedOutputStream.computeFloatSizeNoTag(((Number) value).floatValue());
+			case INT64:
+				return CodedOutputStream.computeInt64SizeNoTag(((Number) value).longValue());
+			case UINT64:
+				return CodedOutputStream.computeUInt64SizeNoTag(((Number) value).longValue());
+			case INT32:
+				return CodedOutputStream.computeInt32SizeNoTag(((Number) value).intValue());
+			case FIXED64:
+				return CodedOutputStream.computeFixed64SizeNoTag(((Number) value).longValue());
+			case FIXED32:
+				return CodedOutputStream.computeFixed32SizeNoTag(((Number) value).intValue());
+			case BOOL:
+				return CodedOutputStream.computeBoolSizeNoTag((Boolean) value);
+			case STRING:
+				return CodedOutputStream.computeStringSizeNoTag((String) value);
+			case BYTES:
+				if (value instanceof byte[] bytes) {
+					return CodedOutputStream.computeByteArraySizeNoTag(bytes);
+				}
+				return CodedOutputStream.computeBytesSizeNoTag((ByteString) value);
+			case UINT32:
+				return CodedOutputStream.computeUInt32SizeNoTag(((Number) value).intValue());
+			case ENUM:
+				return CodedOutputStream.computeEnumSizeNoTag(enumNumber(descriptor, value));
+			case SFIXED32:
+				return CodedOutputStream.computeSFixed32SizeNoTag(((Number) value).intValue());
+			case SFIXED64:
+				return CodedOutputStream.computeSFixed64SizeNoTag(((Number) value).longValue());
+			case SINT32:
+				return CodedOutputStream.computeSInt32SizeNoTag(((Number) value).intValue());
+			case SINT64:
+				return CodedOutputStream.computeSInt64SizeNoTag(((Number) value).longValue());
+			case MESSAGE:
+				int index = sizes.reserve();
+				int size = size(value, descriptor.getMessageType(), sizes);
+				sizes.set(index, size);
+				return CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+			default:
+				throw new UnsupportedOperationException("Unsupported field type: " + descriptor.getType());
+		}
+	}
+
+	private void writeValue(FieldDescriptor descriptor, Object value, CodedOutputStream output, Sizes sizes)
+			throws IOException {
+		switch (descriptor.getType()) {
+			case DOUBLE:
+				output.writeDoubleNoTag(((Number) value).doubleValue());
+				break;
+			case FLOAT:
+				output.writeFloatNoTag(((Number) value).floatValue());
+				break;
+			case INT64:
+				output.writeInt64NoTag(((Number) value).longValue());
+				break;
+			case UINT64:
+				output.writeUInt64NoTag(((Number) value).longValue());
+				break;
+			case INT32:
+				output.writeInt32NoTag(((Number) value).intValue());
+				break;
+			case FIXED64:
+				output.writeFixed64NoTag(((Number) value).longValue());
+				break;
+			case FIXED32:
+				output.writeFixed32NoTag(((Number) value).intValue());
+				break;
+			case BOOL:
+				output.writeBoolNoTag((Boolean) value);
+				break;
+			case STRING:
+				output.writeStringNoTag((String) value);
+				break;
+			case BYTES:
+				if (value instanceof byte[] bytes) {
+					output.writeByteArrayNoTag(bytes);
+				}
+				else {
+					output.writeBytesNoTag((ByteString) value);
+				}
+				break;
+			case UINT32:
+				output.writeUInt32NoTag(((Number) value).intValue());
+				break;
+			case ENUM:
+				output.writeEnumNoTag(enumNumber(descriptor, value));
+				break;
+			case SFIXED32:
+				output.writeSFixed32NoTag(((Number) value).intValue());
+				break;
+			case SFIXED64:
+				output.writeSFixed64NoTag(((Number) value).longValue());
+				break;
+			case SINT32:
+				output.writeSInt32NoTag(((Number) value).intValue());
+				break;
+			case SINT64:
+				output.writeSInt64NoTag(((Number) value).longValue());
+				break;
+			case MESSAGE:
+				output.writeUInt32NoTag(sizes.next());
+				write(value, descriptor.getMessageType(), output, sizes);
+				break;
+			default:
+				throw new UnsupportedOperationException("Unsupported field type: " + descriptor.getType());
+		}
+	}
+
+	/**
+	 * Fields without explicit presence are not serialized if they have the default
+	 * value (same as a {@link com.google.protobuf.DynamicMessage}).
+	 */
+	private boolean isDefault(FieldDescriptor descriptor, Object value) {
+		if (descriptor.hasPresence()) {
+			return false;
+		}
+		if (value instanceof byte[] bytes) {
+			return bytes.length == 0;
+		}
+		if (descriptor.getJavaType() == FieldDescriptor.JavaType.ENUM) {
+			return enumNumber(descriptor, value) == ((EnumValueDescriptor) descriptor.getDefaultValue()).getNumber();
+		}
+		return value.equals(descriptor.getDefaultValue());
+	}
+
+	private int enumNumber(FieldDescriptor descriptor, Object value) {
+		if (value instanceof EnumValueDescriptor enumValue) {
+			return enumValue.getNumber();
+		}
+		if (value instanceof Enum<?> enumValue) {
+			EnumValueDescriptor enumDescriptor = descriptor.getEnumType().findValueByName(enumValue.name());
+			return enumDescriptor != null ? enumDescriptor.getNumber() : enumValue.ordinal();
+		}
+		return ((Number) value).intValue();
+	}
+
+	/**
+	 * The sizes of nested length-delimited values in the order they are encountered
+	 * during serialization.
+	 */
+	static final class Sizes {
+
+		private int[] sizes = new int[8];
+
+		private int count;
+
+		private int position;
+
+		int reserve() {
+			if (this.count == this.sizes.length) {
+				this.sizes = Arrays.copyOf(this.sizes, this.count * 2);
+			}
+			return this.count++;
+		}
+
+		void set(int index, int size) {
+			this.sizes[index] = size;
+		}
+
+		int next() {
+			return this.sizes[this.position++];
+		}
+
+	}
+
+}
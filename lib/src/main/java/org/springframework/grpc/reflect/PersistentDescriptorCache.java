@@ -0,0 +1,210 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.grpc.reflect.DefaultDescriptorMapper.ClassMapping;
+import org.springframework.util.ClassUtils;
+
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+
+/**
+ * An on-disk cache for the message types that a {@link DefaultDescriptorMapper} derives
+ * from Java classes, so that the classes do not have to be introspected again when the
+ * application restarts. There is one file per class in the cache directory, containing
+ * the message type and the classes of its nested message fields, and keyed by a stamp of
+ * the class files of the class and its superclasses, so that validating an entry does
+ * not need any introspection. A class file in a jar is stamped with the last modified
+ * time and size of the jar (computed once per jar), and one in a directory with its own
+ * last modified time and size. An entry whose key does not match the current class is
+ * ignored and replaced. Classes whose class files cannot be located are not cached.
+ * <p>
+ * The cache is best effort: if an entry cannot be read or written it is just recomputed.
+ *
+ * @author Dave Syer
+ * @since 1.0.0
+ */
+public class PersistentDescriptorCache {
+
+	private static final int VERSION = 2;
+
+	private final Path directory;
+
+	private final Map<URL, Object> locations = new ConcurrentHashMap<>();
+
+	public PersistentDescriptorCache(Path directory) {
+		this.directory = directory;
+	}
+
+	public Path getDirectory() {
+		return this.directory;
+	}
+
+	ClassMapping load(Class<?> type) {
+		if (!cacheable(type)) {
+			return null;
+		}
+		Path file = file(type);
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		String key = key(type);
+		if (key == null) {
+			return null;
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (input.readInt() != VERSION || !input.readUTF().equals(key)) {
+				return null;
+			}
+			byte[] bytes = new byte[input.readInt()];
+			input.readFully(bytes);
+			DescriptorProto proto = DescriptorProto.parseFrom(bytes);
+			int count = input.readInt();
+			Map<String, Class<?>> types = new LinkedHashMap<>();
+			for (int i = 0; i < count; i++) {
+				String name = input.readUTF();
+				types.put(name, ClassUtils.forName(input.readUTF(), type.getClassLoader()));
+			}
+			return new ClassMapping(proto, types);
+		}
+		catch (IOException | ClassNotFoundException | LinkageError e) {
+			// Corrupt or stale, so it will be recomputed
+			return null;
+		}
+	}
+
+	void save(Class<?> type, ClassMapping mapping) {
+		if (!cacheable(type)) {
+			return;
+		}
+		String key = key(type);
+		if (key == null) {
+			return;
+		}
+		Path temp = null;
+		try {
+			Files.createDirectories(this.directory);
+			temp = Files.createTempFile(this.directory, type.getName(), ".tmp");
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				output.writeInt(VERSION);
+				output.writeUTF(key);
+				byte[] bytes = mapping.proto().toByteArray();
+				output.writeInt(bytes.length);
+				output.write(bytes);
+				output.writeInt(mapping.types().size());
+				for (Map.Entry<String, Class<?>> entry : mapping.types().entrySet()) {
+					output.writeUTF(entry.getKey());
+					output.writeUTF(entry.getValue().getName());
+				}
+			}
+			// Atomic so that concurrent readers never see a partial entry
+			Files.move(temp, file(type), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			// Best effort, so it will just be recomputed next time
+			if (temp != null) {
+				temp.toFile().delete();
+			}
+		}
+	}
+
+	private Path file(Class<?> type) {
+		return this.directory.resolve(type.getName() + ".pb");
+	}
+
+	private static boolean cacheable(Class<?> type) {
+		return !type.isHidden() && !type.isPrimitive() && !type.isArray();
+	}
+
+	/**
+	 * A key for the current version of the class and its superclasses, or
+	 * <code>null</code> if any of their class files cannot be located.
+	 */
+	String key(Class<?> type) {
+		StringBuilder builder = new StringBuilder();
+		Class<?> current = type;
+		while (current != null && current != Object.class) {
+			String stamp = stamp(current);
+			if (stamp == null) {
+				return null;
+			}
+			builder.append(current.getName()).append('@').append(stamp).append(';');
+			current = current.getSuperclass();
+		}
+		return builder.toString();
+	}
+
+	private String stamp(Class<?> type) {
+		if (type.getClassLoader() == null) {
+			// Only changes with the JDK
+			return Runtime.version().toString();
+		}
+		CodeSource source = type.getProtectionDomain().getCodeSource();
+		URL url = source != null ? source.getLocation() : null;
+		if (url == null) {
+			return null;
+		}
+		Object location = this.locations.computeIfAbsent(url, PersistentDescriptorCache::location);
+		if (location instanceof Path directory) {
+			return stamp(directory.resolve(ClassUtils.convertClassNameToResourcePath(type.getName()) + ".class"));
+		}
+		return location instanceof String value ? value : null;
+	}
+
+	/**
+	 * The stamp of a jar (a String), or the directory (a Path) that has to be consulted
+	 * for each class file, or the location itself if it is not in the file system.
+	 */
+	private static Object location(URL url) {
+		try {
+			Path path = Path.of(url.toURI());
+			if (Files.isDirectory(path)) {
+				return path;
+			}
+			String stamp = stamp(path);
+			return stamp != null ? stamp : url;
+		}
+		catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+			return url;
+		}
+	}
+
+	private static String stamp(Path path) {
+		try {
+			return Files.getLastModifiedTime(path).toMillis() + ":" + Files.size(path);
+		}
+		catch (IOException e) {
+			return null;
+		}
+	}
+
+}
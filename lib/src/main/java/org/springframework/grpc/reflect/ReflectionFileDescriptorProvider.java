@@ -15,6 +15,8 @@
  */
 package org.springframework.grpc.reflect;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -38,6 +40,12 @@ import io.grpc.MethodDescriptor.MethodType;
  * This implementation of {@link DescriptorProvider} leverages Java reflection to extract
  * protocol buffer descriptors from compiled classes, enabling dynamic access to gRPC
  * service definitions.
+ * <p>
+ * The message types are indexed by their simple and full names as the files are
+ * assembled, and by the Java class they were mapped from, so that lookups do not have to
+ * scan the files. The file for a service is only built when it is first needed after new
+ * methods have been registered, so registering all the methods of a service and then
+ * looking it up builds its file once, rather than once per method.
  *
  * @author Dave Syer
  * @since 1.0.0
@@ -48,9 +56,15 @@ public class ReflectionFileDescriptorProvider implements DescriptorProvider {
 
 	private final Map<String, FileDescriptor> catalog = new HashMap<>();
 
-	private Map<Class<?>, FileDescriptor> types = new HashMap<>();
+	private Map<Class<?>, Descriptor> types = new HashMap<>();
+
+	private Map<String, Descriptor> symbols = new HashMap<>();
+
+	private Set<FileDescriptor> indexed = new HashSet<>();
 
-	private Map<String, ServiceDescriptorProto> serviceProtos = new HashMap<>();
+	private Map<String, ServiceDescriptorProto.Builder> serviceProtos = new HashMap<>();
+
+	private Set<String> pending = new HashSet<>();
 
 	private Map<String, List<Class<?>>> typesPerService = new HashMap<>();
 
@@ -64,23 +78,23 @@ public class ReflectionFileDescriptorProvider implements DescriptorProvider {
 
 	@Override
 	public Descriptor type(String name) {
-		for (FileDescriptor file : this.catalog.values()) {
-			Descriptor descriptor = file.findMessageTypeByName(name);
-			if (descriptor != null) {
-				return descriptor;
-			}
-			for (FileDescriptor dependency : file.getDependencies()) {
-				descriptor = dependency.findMessageTypeByName(name);
-				if (descriptor != null) {
-					return descriptor;
-				}
-			}
-		}
-		return null;
+		flush();
+		return this.symbols.get(name);
+	}
+
+	/**
+	 * The message type that a Java class was mapped to, if it has been registered as
+	 * the input or output of a method.
+	 * @param type the Java class
+	 * @return the descriptor or <code>null</code> if there is none
+	 */
+	public Descriptor type(Class<?> type) {
+		return this.types.get(type);
 	}
 
 	@Override
 	public ServiceDescriptor service(String name) {
+		flush(name);
 		FileDescriptor file = this.catalog.get(name);
 		if (file != null) {
 			return file.findServiceByName(name);
@@ -88,6 +102,15 @@ public class ReflectionFileDescriptorProvider implements DescriptorProvider {
 		return null;
 	}
 
+	/**
+	 * Map a batch of message types up front, so that they can share a single file
+	 * (instead of one per class graph) when they are registered later.
+	 * @param types the message types
+	 */
+	public void prepare(Collection<Class<?>> types) {
+		this.protos.descriptors(types);
+	}
+
 	public <I, O> void unary(String fullMethodName, Class<I> input, Class<O> output) {
 		register(fullMethodName, input, output, MethodType.UNARY);
 	}
@@ -96,6 +119,10 @@ public class ReflectionFileDescriptorProvider implements DescriptorProvider {
 		register(fullMethodName, input, output, MethodType.SERVER_STREAMING);
 	}
 
+	public <I, O> void clientStream(String fullMethodName, Class<I> input, Class<O> output) {
+		register(fullMethodName, input, output, MethodType.CLIENT_STREAMING);
+	}
+
 	public <I, O> void bidi(String fullMethodName, Class<I> input, Class<O> output) {
 		register(fullMethodName, input, output, MethodType.BIDI_STREAMING);
 	}
@@ -111,6 +138,9 @@ public class ReflectionFileDescriptorProvider implements DescriptorProvider {
 			case SERVER_STREAMING:
 				builder.setServerStreaming(true);
 				break;
+			case CLIENT_STREAMING:
+				builder.setClientStreaming(true);
+				break;
 			case BIDI_STREAMING:
 				builder.setServerStreaming(true);
 				builder.setClientStreaming(true);
@@ -123,24 +153,37 @@ public class ReflectionFileDescriptorProvider implements DescriptorProvider {
 
 	private void register(String serviceName, String methodName, MethodDescriptorProto proto, Class<?> input,
 			Class<?> output) {
-		ServiceDescriptorProto service = this.serviceProtos.get(serviceName);
-		if (service == null) {
-			service = ServiceDescriptorProto.newBuilder().setName(serviceName).build();
-		}
+		ServiceDescriptorProto.Builder service = this.serviceProtos.computeIfAbsent(serviceName,
+				name -> ServiceDescriptorProto.newBuilder().setName(name));
 		if (findMethod(service, methodName) != null) {
 			return;
 		}
-		ServiceDescriptorProto.Builder builder = service.toBuilder();
-		builder.addMethod(proto);
-		service = builder.build();
-		this.serviceProtos.put(serviceName, service);
+		service.addMethod(proto);
 		register(serviceName, input);
 		register(serviceName, output);
-		process(serviceName);
+		// The file is only built when it is needed, so that it is built once for all the
+		// methods that are registered before it is used
+		this.pending.add(serviceName);
+	}
+
+	/**
+	 * Build the files for all the services that have new methods since they were last
+	 * built.
+	 */
+	public void flush() {
+		for (String owner : new ArrayList<>(this.pending)) {
+			flush(owner);
+		}
+	}
+
+	private void flush(String owner) {
+		if (this.pending.remove(owner)) {
+			process(owner);
+		}
 	}
 
 	private boolean register(String owner, Class<?> type) {
-		this.typesPerService.computeIfAbsent(owner, key -> new java.util.ArrayList<>());
+		this.typesPerService.computeIfAbsent(owner, key -> new ArrayList<>());
 		if (this.typesPerService.get(owner).contains(type)) {
 			return false;
 		}
@@ -149,7 +192,7 @@ public class ReflectionFileDescriptorProvider implements DescriptorProvider {
 		return true;
 	}
 
-	private MethodDescriptorProto findMethod(ServiceDescriptorProto service, String name) {
+	private MethodDescriptorProto findMethod(ServiceDescriptorProto.Builder service, String name) {
 		for (MethodDescriptorProto method : service.getMethodList()) {
 			if (method.getName().equals(name)) {
 				return method;
@@ -167,14 +210,12 @@ public class ReflectionFileDescriptorProvider implements DescriptorProvider {
 			builder.setName(owner + ".proto");
 			builder.setSyntax("proto3");
 		}
-		ServiceDescriptorProto service = this.serviceProtos.get(owner);
-		if (service != null) {
-			removeService(builder, service.getName());
-			builder.addService(service);
-		}
+		ServiceDescriptorProto service = this.serviceProtos.get(owner).build();
+		removeService(builder, service.getName());
+		builder.addService(service);
 		Set<FileDescriptor> dependencies = new HashSet<>();
 		for (Class<?> type : this.typesPerService.get(owner)) {
-			FileDescriptor message = this.types.get(type);
+			FileDescriptor message = this.types.get(type).getFile();
 			dependencies.add(message);
 			if (builder.getDependencyList().contains(message.getName())) {
 				continue;
@@ -185,6 +226,10 @@ public class ReflectionFileDescriptorProvider implements DescriptorProvider {
 			FileDescriptor proto = FileDescriptor.buildFrom(builder.build(),
 					dependencies.toArray(new FileDescriptor[0]));
 			this.catalog.put(service.getName(), proto);
+			index(proto);
+			for (FileDescriptor dependency : dependencies) {
+				index(dependency);
+			}
 		}
 		catch (DescriptorValidationException e) {
 			throw new IllegalStateException(e);
@@ -201,9 +246,27 @@ public class ReflectionFileDescriptorProvider implements DescriptorProvider {
 	}
 
 	private void process(String owner, Class<?> type) {
-		Descriptor message = this.protos.descriptor(type);
-		FileDescriptor proto = message.getFile();
-		this.types.put(type, proto);
+		this.types.put(type, this.protos.descriptor(type));
+	}
+
+	private void index(FileDescriptor file) {
+		if (!this.indexed.add(file)) {
+			return;
+		}
+		for (Descriptor type : file.getMessageTypes()) {
+			index(type);
+		}
+	}
+
+	private void index(Descriptor type) {
+		this.symbols.putIfAbsent(type.getFullName(), type);
+		if (type.getContainingType() == null) {
+			// Simple names are ambiguous across packages, so the first one wins
+			this.symbols.putIfAbsent(type.getName(), type);
+		}
+		for (Descriptor nested : type.getNestedTypes()) {
+			index(nested);
+		}
 	}
 
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.function.ToIntFunction;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.EmitResult;
+import reactor.core.publisher.Sinks.Many;
+
+/**
+ * The request observer for a client streaming or bidirectional streaming call, with
+ * inbound flow control. Automatic inbound requests are disabled, and messages are only
+ * requested from the client while fewer than <code>prefetch</code> of them are waiting
+ * for the handler to consume them from {@link #flux()}, and (if there is a byte budget)
+ * while their serialized size is expected to stay within the budget. So however many
+ * messages the client sends, only a bounded number of them are in memory at once. If the
+ * handler cancels its subscription while the client is still sending, the call is closed
+ * with {@link Status#CANCELLED}, since nothing would ever read the rest of the requests.
+ * <p>
+ * Must be created during the initial call to the application (i.e. in the method
+ * handler) since that is the only time that flow control can be configured.
+ *
+ * @param <I> the type of the requests
+ * @author Dave Syer
+ * @since 1.0.0
+ */
+class RequestStreamObserver<I> implements StreamObserver<Object> {
+
+	private final ServerCallStreamObserver<Object> observer;
+
+	private final Many<I> sink = Sinks.many().unicast().onBackpressureBuffer();
+
+	private final Flux<I> flux;
+
+	private final int prefetch;
+
+	private final int budget;
+
+	private final ToIntFunction<Object> sizer;
+
+	private final Queue<Integer> sizes = new ArrayDeque<>();
+
+	private int requested;
+
+	private long bytes;
+
+	private boolean closed;
+
+	/**
+	 * Create a new observer and request the first messages from the client.
+	 * @param observer the response observer
+	 * @param prefetch the maximum number of messages to buffer
+	 * @param budget the maximum number of bytes to buffer from the client (or 0 for no
+	 * limit)
+	 * @param sizer a function that returns the size of a request on the wire
+	 */
+	RequestStreamObserver(ServerCallStreamObserver<Object> observer, int prefetch, int budget,
+			ToIntFunction<Object> sizer) {
+		this.observer = observer;
+		this.prefetch = Math.max(prefetch, 1);
+		this.budget = budget;
+		this.sizer = sizer;
+		this.flux = this.sink.asFlux().doOnNext(item -> consumed()).doOnCancel(this::cancelled);
+		observer.disableAutoRequest();
+		pull();
+	}
+
+	/**
+	 * The requests, as they arrive from the client. Can only be subscribed to once.
+	 * @return the requests
+	 */
+	Flux<I> flux() {
+		return this.flux;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void onNext(Object value) {
+		int size = this.budget > 0 ? this.sizer.applyAsInt(value) : 0;
+		synchronized (this) {
+			// The request count can go negative if the transport does not honour it
+			this.requested = Math.max(this.requested - 1, 0);
+			this.sizes.add(size);
+			this.bytes += size;
+		}
+		EmitResult result = this.sink.tryEmitNext((I) value);
+		if (result.isFailure()) {
+			rejected(size, result);
+		}
+	}
+
+	/**
+	 * A request could not be handed to the handler (it cancelled the subscription, or the
+	 * stream was already terminated), so it is dropped and the call is closed.
+	 */
+	private void rejected(int size, EmitResult result) {
+		synchronized (this) {
+			this.sizes.remove(size);
+			this.bytes -= size;
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+		}
+		if (this.observer.isCancelled()) {
+			return;
+		}
+		try {
+			this.observer.onError(Status.CANCELLED
+				.withDescription("Request stream is no longer consumed by the handler (" + result + ")")
+				.asRuntimeException());
+		}
+		catch (IllegalStateException e) {
+			// The handler already closed the call (e.g. it only needed the first request)
+		}
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		this.sink.tryEmitError(t);
+	}
+
+	@Override
+	public void onCompleted() {
+		// The response is completed by the handler when it has finished with the input
+		this.sink.tryEmitComplete();
+	}
+
+	private void consumed() {
+		synchronized (this) {
+			Integer size = this.sizes.poll();
+			if (size != null) {
+				this.bytes -= size;
+			}
+		}
+		pull();
+	}
+
+	/**
+	 * The handler cancelled its subscription, so the buffered requests are discarded.
+	 * Any more that the client sends are rejected, so there must be room for at least one
+	 * of them, or the client might wait forever for permission to send it.
+	 */
+	private void cancelled() {
+		synchronized (this) {
+			this.sizes.clear();
+			this.bytes = 0;
+		}
+		pull();
+	}
+
+	private void pull() {
+		int count;
+		synchronized (this) {
+			if (this.closed) {
+				return;
+			}
+			count = this.prefetch - this.sizes.size() - this.requested;
+			if (this.budget > 0 && !this.sizes.isEmpty()) {
+				// Estimate how many more messages fit from the ones that are buffered (if
+				// nothing is buffered, one message is allowed even if it is too big)
+				long average = Math.max(this.bytes / this.sizes.size(), 1);
+				count = (int) Math.min(count, (this.budget - this.bytes) / average - this.requested);
+			}
+			if (count <= 0) {
+				return;
+			}
+			this.requested += count;
+		}
+		this.observer.request(count);
+	}
+
+}
@@ -32,6 +32,7 @@ import io.grpc.InternalServer;
 import io.grpc.Server;
 import io.grpc.ServerMethodDefinition;
 import io.grpc.ServerServiceDefinition;
+import reactor.core.scheduler.Scheduler;
 
 /**
  * An embedded gRPC server implementation for Spring WebFlux applications.
@@ -118,6 +119,25 @@ public class EmbeddedGrpcServer extends Server {
 		}
 	}
 
+	/**
+	 * Set the scheduler for services that might block (see
+	 * {@link GrpcRequestHandler#setScheduler(Scheduler)}).
+	 * @param scheduler the scheduler to use
+	 */
+	public void setScheduler(Scheduler scheduler) {
+		this.requestHandler.setScheduler(scheduler);
+	}
+
+	/**
+	 * Set the scheduler for a single method (see
+	 * {@link GrpcRequestHandler#setScheduler(String, Scheduler)}).
+	 * @param fullMethodName the full method name (service/method)
+	 * @param scheduler the scheduler to use
+	 */
+	public void setScheduler(String fullMethodName, Scheduler scheduler) {
+		this.requestHandler.setScheduler(fullMethodName, scheduler);
+	}
+
 	public Map<String, HandlerFunction<ServerResponse>> getHandlers() {
 		return this.handlers;
 	}
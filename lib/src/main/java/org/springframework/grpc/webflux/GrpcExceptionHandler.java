@@ -23,6 +23,7 @@ import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebExceptionHandler;
 
+import io.grpc.Status;
 import io.grpc.Status.Code;
 import reactor.core.publisher.Mono;
 import reactor.netty.http.server.HttpServerResponse;
@@ -49,7 +50,7 @@ public class GrpcExceptionHandler extends GrpcCodecSupport implements WebExcepti
 	public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
 		if (supportsMimeType(exchange.getRequest().getHeaders().getContentType())) {
 			exchange.getResponse().getHeaders().setContentType(MediaType.parseMediaType("application/grpc"));
-			addTrailer(exchange.getResponse());
+			addTrailer(exchange.getResponse(), ex);
 			return exchange.getResponse().setComplete();
 		}
 		else {
@@ -57,13 +58,15 @@ public class GrpcExceptionHandler extends GrpcCodecSupport implements WebExcepti
 		}
 	}
 
-	private void addTrailer(ServerHttpResponse response) {
+	private void addTrailer(ServerHttpResponse response, Throwable ex) {
 		response.getHeaders().add("Trailer", GRPC_STATUS_HEADER);
 		while (response instanceof ServerHttpResponseDecorator) {
 			response = ((ServerHttpResponseDecorator) response).getDelegate();
 		}
 		if (response instanceof AbstractServerHttpResponse server) {
-			String grpcStatus = "" + Code.INTERNAL.ordinal(); // INTERNAL error code";
+			Code code = Status.fromThrowable(ex).getCode();
+			// Anything that is not a gRPC status is an INTERNAL error
+			String grpcStatus = "" + (code == Code.UNKNOWN ? Code.INTERNAL : code).value();
 			HttpServerResponse httpServerResponse = (HttpServerResponse) (server).getNativeResponse();
 			httpServerResponse.trailerHeaders(h -> {
 				h.set(GRPC_STATUS_HEADER, grpcStatus);
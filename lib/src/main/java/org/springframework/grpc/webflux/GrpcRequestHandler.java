@@ -15,6 +15,9 @@
  */
 package org.springframework.grpc.webflux;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.reactivestreams.Publisher;
 import org.springframework.web.reactive.function.server.ServerRequest;
 
@@ -23,15 +26,17 @@ import io.grpc.Context;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.MethodDescriptor.MethodType;
-import io.grpc.MethodDescriptor.PrototypeMarshaller;
+import io.grpc.MethodDescriptor.ReflectableMarshaller;
 import io.grpc.ServerCall;
 import io.grpc.ServerMethodDefinition;
 import io.grpc.Status;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 import reactor.core.publisher.Sinks;
 import reactor.core.publisher.Sinks.Many;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
 /**
@@ -50,47 +55,113 @@ public class GrpcRequestHandler<I, O> {
 
 	private EmbeddedGrpcServer server;
 
+	private Scheduler scheduler = Schedulers.boundedElastic();
+
+	private final Map<String, Scheduler> schedulers = new ConcurrentHashMap<>();
+
 	public GrpcRequestHandler(EmbeddedGrpcServer server) {
 		this.server = server;
 	}
 
+	/**
+	 * Set the scheduler for services that are not reactive (so they might block). The
+	 * default is {@link Schedulers#boundedElastic()}, which limits the number of
+	 * concurrent blocking calls to the size of its pool.
+	 * @param scheduler the scheduler to use
+	 */
+	public void setScheduler(Scheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Set the scheduler for a single method (e.g. one that is known to block), in place
+	 * of the default. Unlike the default, it also applies to unary calls, and to
+	 * services that are reactive.
+	 * @param fullMethodName the full method name (service/method)
+	 * @param scheduler the scheduler to use
+	 */
+	public void setScheduler(String fullMethodName, Scheduler scheduler) {
+		this.schedulers.put(fullMethodName, scheduler);
+	}
+
 	public Class<I> getInputType(ServerMethodDefinition<I, O> serverMethod) {
-		return ((PrototypeMarshaller<I>) serverMethod.getMethodDescriptor().getRequestMarshaller()).getMessageClass();
+		return ((ReflectableMarshaller<I>) serverMethod.getMethodDescriptor().getRequestMarshaller()).getMessageClass();
 	}
 
 	public Class<O> getOutputType(ServerMethodDefinition<I, O> serverMethod) {
-		return ((PrototypeMarshaller<O>) serverMethod.getMethodDescriptor().getResponseMarshaller()).getMessageClass();
+		return ((ReflectableMarshaller<O>) serverMethod.getMethodDescriptor().getResponseMarshaller())
+			.getMessageClass();
 	}
 
 	public Publisher<O> handle(BindableService bindable, ServerMethodDefinition<I, O> serverMethod,
 			ServerRequest request) {
 		Class<?> inputType = getInputType(serverMethod);
+		MethodType type = serverMethod.getMethodDescriptor().getType();
 		@SuppressWarnings("unchecked")
-		Publisher<I> input = (Publisher<I>) (serverMethod.getMethodDescriptor().getType() == MethodType.BIDI_STREAMING
-				? request.bodyToFlux(inputType) : request.bodyToMono(inputType));
-		switch (serverMethod.getMethodDescriptor().getType()) {
+		Publisher<I> input = (Publisher<I>) (type.clientSendsOneMessage() ? request.bodyToMono(inputType)
+				: request.bodyToFlux(inputType));
+		switch (type) {
 			case UNARY:
-				return Mono.from(input).map(item -> unary(item, serverMethod));
+				Scheduler scheduler = this.schedulers.get(serverMethod.getMethodDescriptor().getFullMethodName());
+				Mono<I> item = Mono.from(input);
+				if (scheduler != null) {
+					item = item.publishOn(scheduler);
+				}
+				return item.flatMap(value -> unary(value, serverMethod));
 			case SERVER_STREAMING:
 				return Mono.from(input).flatMapMany(item -> stream(item, bindable, serverMethod));
+			case CLIENT_STREAMING:
+				return clientStream(Flux.from(input), bindable, serverMethod);
 			case BIDI_STREAMING:
 				return bidi(Flux.from(input), bindable, serverMethod);
 			default:
-				throw new UnsupportedOperationException(
-						"Unsupported method type: " + serverMethod.getMethodDescriptor().getType());
+				throw new UnsupportedOperationException("Unsupported method type: " + type);
 		}
 	}
 
-	private O unary(I input, ServerMethodDefinition<I, O> serverMethod) {
+	private Mono<O> unary(I input, ServerMethodDefinition<I, O> serverMethod) {
 		var method = serverMethod.getMethodDescriptor();
 		var call = new OneToOneServerCall<I, O>(method);
 		var listener = serverMethod.getServerCallHandler().startCall(call, null);
 		listener.onMessage(input);
 		listener.onReady();
 		listener.onHalfClose();
-		listener.onComplete();
-		O entity = call.response;
-		return entity;
+		// The response might be sent asynchronously, after the handler has returned
+		return call.response().doFinally(signalType -> {
+			if (signalType == SignalType.CANCEL) {
+				call.cancel();
+				listener.onCancel();
+			}
+			else {
+				listener.onComplete();
+			}
+		});
+	}
+
+	private Mono<O> clientStream(Flux<I> request, BindableService bindable,
+			ServerMethodDefinition<I, O> serverMethod) {
+		var method = serverMethod.getMethodDescriptor();
+		var call = new OneToOneServerCall<I, O>(method);
+		var listener = serverMethod.getServerCallHandler().startCall(call, null);
+		listener.onReady();
+		Flux<I> source = request;
+		Scheduler scheduler = scheduler(bindable, serverMethod);
+		if (scheduler != null) {
+			source = request.publishOn(scheduler);
+		}
+		// The response is only expected after the last request has been delivered
+		return source.doOnNext(listener::onMessage).then(Mono.defer(() -> {
+			listener.onHalfClose();
+			return call.response();
+		})).doFinally(signalType -> {
+			if (signalType == SignalType.CANCEL) {
+				call.cancel();
+				listener.onCancel();
+			}
+			else {
+				listener.onComplete();
+			}
+		});
 	}
 
 	private Flux<O> stream(I input, BindableService bindable, ServerMethodDefinition<I, O> serverMethod) {
@@ -103,11 +174,19 @@ public class GrpcRequestHandler<I, O> {
 			listener.onHalfClose();
 			// TODO: this seems to slow down non-reactive service tests - investigate
 			emitter.onDispose(() -> {
-				listener.onComplete();
+				if (emitter.isCancelled()) {
+					// The client went away, so the service can stop producing
+					call.cancel();
+					listener.onCancel();
+				}
+				else {
+					listener.onComplete();
+				}
 			});
 		});
-		if (!isReactive(bindable, serverMethod)) {
-			result = result.subscribeOn(Schedulers.boundedElastic(), false);
+		Scheduler scheduler = scheduler(bindable, serverMethod);
+		if (scheduler != null) {
+			result = result.subscribeOn(scheduler, false);
 		}
 		return result;
 	}
@@ -120,15 +199,22 @@ public class GrpcRequestHandler<I, O> {
 			var call = new ManyToManyServerCall<I, O>(method);
 			var listener = serverMethod.getServerCallHandler().startCall(call, null);
 			Flux<I> source = request;
-			if (!isReactive(bindable, serverMethod)) {
-				source = request.publishOn(Schedulers.boundedElastic());
+			Scheduler scheduler = scheduler(bindable, serverMethod);
+			if (scheduler != null) {
+				source = request.publishOn(scheduler);
 			}
 			return Flux.merge(source.doOnNext(input -> {
 				listener.onMessage(input);
 				listener.onReady();
 			}).doFinally(signalType -> {
-				listener.onHalfClose();
-				listener.onComplete();
+				if (signalType == SignalType.CANCEL) {
+					call.cancel();
+					listener.onCancel();
+				}
+				else {
+					listener.onHalfClose();
+					listener.onComplete();
+				}
 				call.complete();
 			}).filter(input -> false).then(Mono.empty()), call.flux());
 		}
@@ -137,6 +223,17 @@ public class GrpcRequestHandler<I, O> {
 		}
 	}
 
+	/**
+	 * The scheduler to move a streaming call onto (or null if it can stay where it is).
+	 */
+	private Scheduler scheduler(BindableService bindable, ServerMethodDefinition<I, O> serverMethod) {
+		Scheduler scheduler = this.schedulers.get(serverMethod.getMethodDescriptor().getFullMethodName());
+		if (scheduler == null && !isReactive(bindable, serverMethod)) {
+			scheduler = this.scheduler;
+		}
+		return scheduler;
+	}
+
 	private boolean isReactive(BindableService bindable, ServerMethodDefinition<I, O> serverMethod) {
 		// If we have reason to believe that the bindable is not reactive we need to
 		// ensure that the request is processed on a bounded elastic scheduler to avoid
@@ -148,10 +245,16 @@ public class GrpcRequestHandler<I, O> {
 
 		protected MethodDescriptor<Req, Res> method;
 
+		private volatile boolean cancelled;
+
 		public LocalServerCall(MethodDescriptor<Req, Res> method) {
 			this.method = method;
 		}
 
+		void cancel() {
+			this.cancelled = true;
+		}
+
 		@Override
 		public void request(int numMessages) {
 		}
@@ -162,7 +265,7 @@ public class GrpcRequestHandler<I, O> {
 
 		@Override
 		public boolean isCancelled() {
-			return false;
+			return this.cancelled;
 		}
 
 		@Override
@@ -178,7 +281,7 @@ public class GrpcRequestHandler<I, O> {
 
 	class OneToOneServerCall<Req, Res> extends LocalServerCall<Req, Res> {
 
-		private Res response;
+		private final Sinks.One<Res> response = Sinks.one();
 
 		public OneToOneServerCall(MethodDescriptor<Req, Res> method) {
 			super(method);
@@ -186,7 +289,21 @@ public class GrpcRequestHandler<I, O> {
 
 		@Override
 		public void sendMessage(Res message) {
-			this.response = message;
+			this.response.tryEmitValue(message);
+		}
+
+		@Override
+		public void close(Status status, Metadata trailers) {
+			if (status.isOk()) {
+				this.response.tryEmitEmpty();
+			}
+			else {
+				this.response.tryEmitError(status.asRuntimeException(trailers));
+			}
+		}
+
+		public Mono<Res> response() {
+			return this.response.asMono();
 		}
 
 	}
@@ -207,7 +324,12 @@ public class GrpcRequestHandler<I, O> {
 
 		@Override
 		public void close(Status status, Metadata trailers) {
-			emitter.complete();
+			if (status.isOk()) {
+				emitter.complete();
+			}
+			else {
+				emitter.error(status.asRuntimeException(trailers));
+			}
 		}
 
 	}
@@ -225,6 +347,15 @@ public class GrpcRequestHandler<I, O> {
 			this.emitter.tryEmitNext(message);
 		}
 
+		@Override
+		public void close(Status status, Metadata trailers) {
+			// Normal completion is driven by the requests, but a failure (e.g. a call
+			// that is rejected before it starts) has to be passed on
+			if (!status.isOk()) {
+				this.emitter.tryEmitError(status.asRuntimeException(trailers));
+			}
+		}
+
 		public Flux<Res> flux() {
 			return this.emitter.asFlux();
 		}
@@ -16,6 +16,7 @@
 package org.springframework.grpc.webflux;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
@@ -23,11 +24,18 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.grpc.reflect.DynamicServiceFactory;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.RouterFunctions;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
 import io.grpc.BindableService;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * Auto-configuration for gRPC server functionality in Spring WebFlux.
@@ -46,11 +54,35 @@ import io.grpc.BindableService;
 public class GrpcWebfluxServerAutoConfiguration {
 
 	@Bean
-	public EmbeddedGrpcServer grpcServer(ObjectProvider<BindableService> bindableServices) throws IOException {
+	public EmbeddedGrpcServer grpcServer(ObjectProvider<BindableService> bindableServices,
+			ObjectProvider<DynamicServiceFactory> factories, Environment environment) throws IOException {
 		EmbeddedGrpcServer server = new EmbeddedGrpcServer();
 		for (BindableService service : bindableServices) {
 			server.addService(service);
 		}
+		DynamicServiceFactory factory = factories.getIfAvailable();
+		if (environment.getProperty("spring.grpc.reflect.server.virtual-threads", Boolean.class, false)) {
+			// Applies to all the services, not only the ones built by the factory
+			Executor executor = factory != null ? factory.getVirtualThreadExecutor()
+					: new VirtualThreadTaskExecutor("grpc-webflux-");
+			server.setScheduler(Schedulers.fromExecutor(executor));
+		}
+		if (factory != null) {
+			// Methods that opted in to virtual threads (per method, per service, or all of
+			// them) are scheduled on the same executor as their handlers
+			Scheduler virtualThreads = null;
+			for (ServerServiceDefinition service : server.getServices()) {
+				for (ServerMethodDefinition<?, ?> method : service.getMethods()) {
+					String name = method.getMethodDescriptor().getFullMethodName();
+					if (factory.isVirtualThreads(name)) {
+						if (virtualThreads == null) {
+							virtualThreads = Schedulers.fromExecutor(factory.getVirtualThreadExecutor());
+						}
+						server.setScheduler(name, virtualThreads);
+					}
+				}
+			}
+		}
 		server.start();
 		return server;
 	}
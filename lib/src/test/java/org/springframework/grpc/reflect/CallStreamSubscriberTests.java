@@ -0,0 +1,152 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import reactor.core.publisher.Flux;
+
+public class CallStreamSubscriberTests {
+
+	@Test
+	public void testNoDemandUntilReady() {
+		TestObserver observer = new TestObserver();
+		AtomicLong requested = new AtomicLong();
+		observer.ready = false;
+		Flux.range(0, 100).doOnRequest(requested::addAndGet).subscribe(new CallStreamSubscriber<>(observer, 8));
+		assertThat(requested.get()).isZero();
+
+		observer.ready = true;
+		observer.onReady.run();
+
+		assertThat(observer.values).hasSize(100);
+		assertThat(observer.completed).isTrue();
+	}
+
+	@Test
+	public void testDemandBoundedByPrefetch() {
+		TestObserver observer = new TestObserver();
+		AtomicLong requested = new AtomicLong();
+		// The transport fills up after the first few messages
+		observer.capacity = 5;
+		Flux.range(0, 100).doOnRequest(requested::addAndGet).subscribe(new CallStreamSubscriber<>(observer, 8));
+
+		assertThat(observer.values).hasSize(8);
+		assertThat(requested.get()).isEqualTo(8);
+		assertThat(observer.completed).isFalse();
+	}
+
+	@Test
+	public void testCancelDisposesUpstream() {
+		TestObserver observer = new TestObserver();
+		AtomicBoolean cancelled = new AtomicBoolean();
+		observer.ready = false;
+		Flux.never().doOnCancel(() -> cancelled.set(true)).subscribe(new CallStreamSubscriber<>(observer, 8));
+
+		observer.onCancel.run();
+
+		assertThat(cancelled).isTrue();
+	}
+
+	static class TestObserver extends ServerCallStreamObserver<Object> {
+
+		final List<Object> values = new ArrayList<>();
+
+		boolean ready = true;
+
+		int capacity = Integer.MAX_VALUE;
+
+		boolean completed;
+
+		Throwable error;
+
+		boolean autoRequest = true;
+
+		int requests;
+
+		Runnable onReady;
+
+		Runnable onCancel;
+
+		@Override
+		public boolean isReady() {
+			return this.ready && this.values.size() < this.capacity;
+		}
+
+		@Override
+		public void setOnReadyHandler(Runnable onReadyHandler) {
+			this.onReady = onReadyHandler;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public void setOnCancelHandler(Runnable onCancelHandler) {
+			this.onCancel = onCancelHandler;
+		}
+
+		@Override
+		public void setCompression(String compression) {
+		}
+
+		@Override
+		public void disableAutoInboundFlowControl() {
+			this.autoRequest = false;
+		}
+
+		@Override
+		public void disableAutoRequest() {
+			this.autoRequest = false;
+		}
+
+		@Override
+		public void request(int count) {
+			this.requests += count;
+		}
+
+		@Override
+		public void setMessageCompression(boolean enable) {
+		}
+
+		@Override
+		public void onNext(Object value) {
+			this.values.add(value);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			this.error = t;
+		}
+
+		@Override
+		public void onCompleted() {
+			this.completed = true;
+		}
+
+	}
+
+}
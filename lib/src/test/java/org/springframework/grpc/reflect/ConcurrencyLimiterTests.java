@@ -0,0 +1,218 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.grpc.Attributes;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.Status;
+
+public class ConcurrencyLimiterTests {
+
+	@Test
+	public void testRejectOverLimit() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, Duration.ofSeconds(1));
+		assertThat(limiter.tryAcquire()).isTrue();
+		assertThat(limiter.tryAcquire()).isTrue();
+		assertThat(limiter.tryAcquire()).isFalse();
+		limiter.release(1000, false);
+		assertThat(limiter.tryAcquire()).isTrue();
+		assertThat(limiter.getInFlight()).isEqualTo(2);
+		assertThat(limiter.getAccepted()).isEqualTo(3);
+		assertThat(limiter.getRejected()).isEqualTo(1);
+	}
+
+	@Test
+	public void testBackoffAndRecover() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, Duration.ofMillis(100));
+		for (int i = 0; i < 10; i++) {
+			assertThat(limiter.tryAcquire()).isTrue();
+			limiter.release(Duration.ofMillis(200).toNanos(), false);
+		}
+		assertThat(limiter.getLimit()).isLessThan(10);
+		assertThat(limiter.getOverloaded()).isEqualTo(10);
+		int limit = limiter.getLimit();
+		for (int i = 0; i < 100; i++) {
+			for (int j = 0; j < limiter.getLimit(); j++) {
+				limiter.tryAcquire();
+			}
+			while (limiter.getInFlight() > 0) {
+				limiter.release(1000, false);
+			}
+		}
+		assertThat(limiter.getLimit()).isGreaterThan(limit);
+		assertThat(limiter.getLimit()).isLessThanOrEqualTo(limiter.getMaxLimit());
+	}
+
+	@Test
+	public void testHandlerClosesRejectedCall() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, Duration.ofSeconds(1));
+		AtomicInteger started = new AtomicInteger();
+		ServerCallHandler<Object, Object> handler = limiter.limit((call, headers) -> {
+			started.incrementAndGet();
+			return new ServerCall.Listener<>() {
+			};
+		});
+		TestCall first = new TestCall();
+		TestCall second = new TestCall();
+		ServerCall.Listener<Object> listener = handler.startCall(first, new Metadata());
+		handler.startCall(second, new Metadata());
+		assertThat(started).hasValue(1);
+		assertThat(first.status).isNull();
+		assertThat(second.status.getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+		listener.onCancel();
+		assertThat(limiter.getInFlight()).isZero();
+		handler.startCall(new TestCall(), new Metadata());
+		assertThat(started).hasValue(2);
+	}
+
+	@Test
+	public void testBurstOfSlowCallsBacksOffOnce() {
+		AtomicLong clock = new AtomicLong();
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(100, Duration.ofMillis(100), clock::get);
+		List<ServerCall<Object, Object>> calls = new ArrayList<>();
+		ServerCallHandler<Object, Object> handler = limiter.limit((call, headers) -> {
+			calls.add(call);
+			return new ServerCall.Listener<>() {
+			};
+		});
+		for (int i = 0; i < 100; i++) {
+			handler.startCall(new TestCall(MethodType.UNARY), new Metadata());
+		}
+		clock.addAndGet(Duration.ofSeconds(1).toNanos());
+		for (ServerCall<Object, Object> call : calls) {
+			call.sendMessage("foo");
+			call.close(Status.OK, new Metadata());
+		}
+		assertThat(limiter.getOverloaded()).isEqualTo(100);
+		assertThat(limiter.getLimit()).isEqualTo(90);
+	}
+
+	@Test
+	public void testLongStreamsAreNotOverload() {
+		AtomicLong clock = new AtomicLong();
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, Duration.ofMillis(100), clock::get);
+		List<ServerCall<Object, Object>> calls = new ArrayList<>();
+		ServerCallHandler<Object, Object> handler = limiter.limit((call, headers) -> {
+			calls.add(call);
+			return new ServerCall.Listener<>() {
+			};
+		});
+		for (MethodType type : List.of(MethodType.SERVER_STREAMING, MethodType.CLIENT_STREAMING,
+				MethodType.BIDI_STREAMING)) {
+			calls.clear();
+			for (int i = 0; i < 10; i++) {
+				handler.startCall(new TestCall(type), new Metadata());
+			}
+			assertThat(calls).hasSize(10);
+			clock.addAndGet(Duration.ofMillis(1).toNanos());
+			if (type == MethodType.SERVER_STREAMING) {
+				// The first response is fast, even if the stream is long
+				calls.forEach(call -> call.sendMessage("foo"));
+			}
+			clock.addAndGet(Duration.ofSeconds(5).toNanos());
+			for (ServerCall<Object, Object> call : calls) {
+				call.sendMessage("bar");
+				call.close(Status.OK, new Metadata());
+			}
+		}
+		assertThat(limiter.getOverloaded()).isZero();
+		assertThat(limiter.getLimit()).isEqualTo(10);
+		assertThat(limiter.getLatency()).isEqualTo(Duration.ofMillis(1));
+	}
+
+	static class TestCall extends ServerCall<Object, Object> {
+
+		private final MethodType type;
+
+		private Status status;
+
+		TestCall() {
+			this(MethodType.UNARY);
+		}
+
+		TestCall(MethodType type) {
+			this.type = type;
+		}
+
+		@Override
+		public void request(int numMessages) {
+		}
+
+		@Override
+		public void sendHeaders(Metadata headers) {
+		}
+
+		@Override
+		public void sendMessage(Object message) {
+		}
+
+		@Override
+		public void close(Status status, Metadata trailers) {
+			this.status = status;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public Attributes getAttributes() {
+			return Attributes.EMPTY;
+		}
+
+		@Override
+		public MethodDescriptor<Object, Object> getMethodDescriptor() {
+			return MethodDescriptor.<Object, Object>newBuilder()
+				.setType(this.type)
+				.setFullMethodName("Test/Method")
+				.setRequestMarshaller(new NoopMarshaller())
+				.setResponseMarshaller(new NoopMarshaller())
+				.build();
+		}
+
+	}
+
+	static class NoopMarshaller implements MethodDescriptor.Marshaller<Object> {
+
+		@Override
+		public InputStream stream(Object value) {
+			return InputStream.nullInputStream();
+		}
+
+		@Override
+		public Object parse(InputStream stream) {
+			return null;
+		}
+
+	}
+
+}
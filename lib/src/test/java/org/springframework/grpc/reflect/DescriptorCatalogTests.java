@@ -21,6 +21,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.grpc.sample.proto.HelloWorldProto;
 
 import com.google.protobuf.Any;
+import com.google.protobuf.DescriptorProtos;
 
 import io.grpc.reflection.v1.ServerReflectionProto;
 
@@ -55,4 +56,14 @@ public class DescriptorCatalogTests {
 		assertThat(catalog.service("grpc.reflection.v1.ServerReflection")).isNotNull();
 	}
 
+	@Test
+	public void testRegisterNestedTypesAndMethods() throws Exception {
+		catalog.register(DescriptorProtos.getDescriptor());
+		catalog.register(ServerReflectionProto.getDescriptor().getFile());
+		assertThat(catalog.type("google.protobuf.DescriptorProto.ExtensionRange")).isNotNull();
+		assertThat(catalog.enumType("google.protobuf.FieldDescriptorProto.Type")).isNotNull();
+		assertThat(catalog.method("grpc.reflection.v1.ServerReflection/ServerReflectionInfo")).isNotNull();
+		assertThat(catalog.method("grpc.reflection.v1.ServerReflection/Missing")).isNull();
+	}
+
 }
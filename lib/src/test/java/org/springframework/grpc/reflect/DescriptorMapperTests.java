@@ -17,12 +17,22 @@ package org.springframework.grpc.reflect;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.ClassUtils;
 
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.Descriptors.FieldDescriptor;
@@ -57,6 +67,18 @@ public class DescriptorMapperTests {
 		assertThat(field.isRepeated()).isTrue();
 	}
 
+	@Test
+	public void testRegisterPrimitiveArrayType() throws Exception {
+		Descriptor descriptor = mapper.descriptor(TestArrays.class);
+		FieldDescriptor values = descriptor.findFieldByName("values");
+		assertThat(values.getType()).isEqualTo(FieldDescriptor.Type.DOUBLE);
+		assertThat(values.isRepeated()).isTrue();
+		assertThat(values.isPacked()).isTrue();
+		FieldDescriptor data = descriptor.findFieldByName("data");
+		assertThat(data.getType()).isEqualTo(FieldDescriptor.Type.BYTES);
+		assertThat(data.isRepeated()).isFalse();
+	}
+
 	@Test
 	public void testRegisterMapType() throws Exception {
 		Descriptor descriptor = mapper.descriptor(TestMap.class);
@@ -115,6 +137,93 @@ public class DescriptorMapperTests {
 		assertThat(descriptor.getFile()).isEqualTo(nestedDescriptor.getFile());
 	}
 
+	@Test
+	public void testConcurrentRegistration() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		CountDownLatch latch = new CountDownLatch(1);
+		List<Callable<Descriptor>> tasks = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			tasks.add(() -> {
+				latch.await();
+				return mapper.descriptor(Parallel.class);
+			});
+		}
+		try {
+			List<Future<Descriptor>> futures = new ArrayList<>();
+			for (Callable<Descriptor> task : tasks) {
+				futures.add(executor.submit(task));
+			}
+			latch.countDown();
+			Descriptor descriptor = mapper.descriptor(Parallel.class);
+			for (Future<Descriptor> future : futures) {
+				assertThat(future.get()).isSameAs(descriptor);
+			}
+			assertThat(descriptor.findFieldByName("bean").getMessageType().getFullName()).isEqualTo("TestBean");
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testBatchSharesFile() throws Exception {
+		DefaultDescriptorMapper batch = new DefaultDescriptorMapper();
+		Map<Class<?>, Descriptor> descriptors = batch.descriptors(List.of(TestNested.class, TestList.class));
+		Descriptor nested = descriptors.get(TestNested.class);
+		Descriptor list = descriptors.get(TestList.class);
+		assertThat(nested.getFile()).isSameAs(list.getFile());
+		assertThat(nested.findFieldByName("bean").getMessageType().getFile()).isSameAs(nested.getFile());
+		assertThat(batch.descriptor(TestBean.class)).isSameAs(nested.findFieldByName("bean").getMessageType());
+	}
+
+	@Test
+	public void testPersistentCache(@TempDir Path directory) throws Exception {
+		PersistentDescriptorCache cache = new PersistentDescriptorCache(directory);
+		Descriptor descriptor = new DefaultDescriptorMapper(cache).descriptor(TestNested.class);
+		assertThat(directory.resolve(TestNested.class.getName() + ".pb")).exists();
+		assertThat(directory.resolve(TestBean.class.getName() + ".pb")).exists();
+
+		Descriptor cached = new DefaultDescriptorMapper(cache).descriptor(TestNested.class);
+
+		assertThat(cached.toProto()).isEqualTo(descriptor.toProto());
+		assertThat(cached.findFieldByName("bean").getMessageType().toProto())
+			.isEqualTo(descriptor.findFieldByName("bean").getMessageType().toProto());
+	}
+
+	@Test
+	public void testPersistentCacheKeyTracksClassFile(@TempDir Path directory) throws Exception {
+		PersistentDescriptorCache cache = new PersistentDescriptorCache(directory);
+		String key = cache.key(TestBean.class);
+		assertThat(key).isNotNull().isEqualTo(cache.key(TestBean.class));
+		assertThat(cache.key(TestNested.class)).isNotEqualTo(key);
+		new DefaultDescriptorMapper(cache).descriptor(TestBean.class);
+		Path file = Path.of(TestBean.class.getResource(ClassUtils.getClassFileName(TestBean.class)).toURI());
+		FileTime modified = Files.getLastModifiedTime(file);
+		try {
+			// As if the class had been recompiled
+			Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 1000));
+			assertThat(cache.key(TestBean.class)).isNotEqualTo(key);
+			assertThat(cache.load(TestBean.class)).isNull();
+		}
+		finally {
+			Files.setLastModifiedTime(file, modified);
+		}
+		assertThat(cache.load(TestBean.class)).isNotNull();
+	}
+
+	@Test
+	public void testPersistentCacheIgnoresCorruptEntry(@TempDir Path directory) throws Exception {
+		PersistentDescriptorCache cache = new PersistentDescriptorCache(directory);
+		Files.write(directory.resolve(Foo.class.getName() + ".pb"), new byte[] { 0, 0, 0, 1, 0 });
+
+		Descriptor descriptor = new DefaultDescriptorMapper(cache).descriptor(Foo.class);
+
+		assertThat(descriptor.toProto()).isEqualTo(mapper.descriptor(Foo.class).toProto());
+	}
+
+	record Parallel(TestBean bean, String name) {
+	}
+
 	static class TestNested {
 
 		private TestBean bean;
@@ -143,6 +252,30 @@ public class DescriptorMapperTests {
 
 	}
 
+	static class TestArrays {
+
+		private double[] values;
+
+		private byte[] data;
+
+		public double[] getValues() {
+			return values;
+		}
+
+		public void setValues(double[] values) {
+			this.values = values;
+		}
+
+		public byte[] getData() {
+			return data;
+		}
+
+		public void setData(byte[] data) {
+			this.data = data;
+		}
+
+	}
+
 	static class TestList {
 
 		private List<String> names;
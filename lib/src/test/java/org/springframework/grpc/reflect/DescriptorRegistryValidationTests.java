@@ -20,6 +20,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.lang.reflect.Method;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.jupiter.api.Disabled;
@@ -81,7 +82,8 @@ public class DescriptorRegistryValidationTests {
 		String message = assertThrows(IllegalArgumentException.class,
 				() -> registry.validate("Simple/SayHello", Wrong.class, Response.class))
 			.getMessage();
-		assertThat(message).contains("Field 'name'");
+		assertThat(message).isEqualTo("Field 'name' is a string in the schema, but is not in class "
+				+ Wrong.class.getName() + " for method Simple/SayHello");
 	}
 
 	@Test
@@ -94,6 +96,19 @@ public class DescriptorRegistryValidationTests {
 		assertThrows(IllegalArgumentException.class, () -> registry.validate("Simple/SayHello", Foo.class, Foo.class));
 	}
 
+	@Test
+	public void testValidateRepeatedElementTypes() throws Exception {
+		DefaultDescriptorRegistry registry = new DefaultDescriptorRegistry();
+		registry.unary("Samples/Echo", Samples.class, Samples.class);
+		registry.validate("Samples/Echo", SampleArrays.class, SampleArrays.class);
+		// The second time the result is cached
+		registry.validate("Samples/Echo", SampleArrays.class, SampleArrays.class);
+		String message = assertThrows(IllegalArgumentException.class,
+				() -> registry.validate("Samples/Echo", WrongArrays.class, SampleArrays.class))
+			.getMessage();
+		assertThat(message).contains("Field 'flags' is a boolean");
+	}
+
 	private void register(DefaultDescriptorRegistry registry, Method method) {
 		Class<?> owner = method.getDeclaringClass();
 		Class<?> inputType = method.getParameterTypes()[0];
@@ -129,6 +144,15 @@ public class DescriptorRegistryValidationTests {
 
 	}
 
+	record Samples(List<Double> values, List<Boolean> flags, byte[] data) {
+	}
+
+	record SampleArrays(double[] values, boolean[] flags, byte[] data) {
+	}
+
+	record WrongArrays(double[] values, int[] flags, byte[] data) {
+	}
+
 	public static class Spam {
 
 		private Map<String, Object> items = new HashMap<>();
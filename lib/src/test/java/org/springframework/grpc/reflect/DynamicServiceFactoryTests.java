@@ -0,0 +1,238 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import io.grpc.Attributes;
+import io.grpc.BindableService;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.Status;
+
+public class DynamicServiceFactoryTests {
+
+	private DynamicServiceFactory factory = new DynamicServiceFactory(new DefaultDescriptorRegistry());
+
+	@Test
+	public void testErrorOnExecutorClosesCall() {
+		this.factory.setVirtualThreadExecutor(Runnable::run);
+		BindableService service = this.factory.service("Failing").unary("Fail", Foo.class, Foo.class, foo -> {
+			throw new AssertionError("Planned");
+		}).virtualThreads("Fail").build();
+
+		TestCall call = call(service, "Failing/Fail", new Foo("foo"));
+
+		assertThat(call.status.getCode()).isEqualTo(Status.Code.INTERNAL);
+		assertThat(call.status.getCause()).isInstanceOf(AssertionError.class);
+	}
+
+	@Test
+	public void testFatalErrorOnExecutorClosesCallAndIsRethrown() {
+		this.factory.setVirtualThreadExecutor(Runnable::run);
+		BindableService service = this.factory.service("Failing").unary("Fail", Foo.class, Foo.class, foo -> {
+			throw new StackOverflowError("Planned");
+		}).virtualThreads("Fail").build();
+		ServerMethodDefinition<Object, Object> definition = definition(service, "Failing/Fail");
+		TestCall call = new TestCall(definition.getMethodDescriptor());
+		ServerCall.Listener<Object> listener = definition.getServerCallHandler().startCall(call, new Metadata());
+		listener.onMessage(new Foo("foo"));
+
+		assertThrows(StackOverflowError.class, listener::onHalfClose);
+		assertThat(call.status.getCode()).isEqualTo(Status.Code.INTERNAL);
+	}
+
+	@Test
+	public void testPackagePrivateMethod() {
+		BindableService service = this.factory.service(new Controller()).method("echo").build();
+
+		TestCall call = call(service, "Controller/Echo", new Foo("foo"));
+
+		assertThat(call.status.isOk()).isTrue();
+		assertThat(((Foo) call.message).getName()).isEqualTo("foo");
+	}
+
+	@Test
+	public void testPrivateMethod() {
+		BindableService service = this.factory.service(new Controller()).method("hidden").build();
+
+		TestCall call = call(service, "Controller/Hidden", new Foo("foo"));
+
+		assertThat(((Foo) call.message).getName()).isEqualTo("hidden foo");
+	}
+
+	@Test
+	public void testStaticMethodWithoutInstance() {
+		Method method = ReflectionUtils.findMethod(Controller.class, "upper", Foo.class);
+		BindableService service = this.factory.service("Statics", null).method(method).build();
+
+		TestCall call = call(service, "Statics/Upper", new Foo("foo"));
+
+		assertThat(((Foo) call.message).getName()).isEqualTo("FOO");
+	}
+
+	@Test
+	public void testRuntimeExceptionIsRethrownAsIs() {
+		Throwable error = failure("fail");
+		assertThat(error).isInstanceOf(IllegalStateException.class).hasMessage("Planned");
+		assertThat(error).isExactlyInstanceOf(reflective("fail").getClass());
+	}
+
+	@Test
+	public void testErrorIsRethrownAsIs() {
+		Throwable error = failure("error");
+		assertThat(error).isInstanceOf(AssertionError.class).hasMessage("Planned");
+		assertThat(error).isExactlyInstanceOf(reflective("error").getClass());
+	}
+
+	@Test
+	public void testCheckedExceptionIsUndeclared() {
+		Throwable error = failure("checked");
+		assertThat(error).isInstanceOf(UndeclaredThrowableException.class).hasCauseInstanceOf(IOException.class);
+		assertThat(error).isExactlyInstanceOf(reflective("checked").getClass());
+	}
+
+	@Test
+	public void testRuntimeExceptionOnExecutorClosesCall() {
+		this.factory.setVirtualThreads(true);
+		this.factory.setVirtualThreadExecutor(Runnable::run);
+		BindableService service = this.factory.service(new Controller()).method("fail").build();
+
+		TestCall call = call(service, "Controller/Fail", new Foo("foo"));
+
+		assertThat(call.status.getCode()).isEqualTo(Status.Code.UNKNOWN);
+		assertThat(call.status.getCause()).isInstanceOf(IllegalStateException.class);
+	}
+
+	private Throwable failure(String methodName) {
+		BindableService service = this.factory.service(new Controller()).method(methodName).build();
+		String fullMethodName = "Controller/" + StringUtils.capitalize(methodName);
+		return assertThrows(Throwable.class, () -> call(service, fullMethodName, new Foo("foo")));
+	}
+
+	/**
+	 * What the same method throws when it is called with
+	 * {@link ReflectionUtils#invokeMethod(Method, Object, Object...)}.
+	 */
+	private static Throwable reflective(String methodName) {
+		Method method = ReflectionUtils.findMethod(Controller.class, methodName, Foo.class);
+		ReflectionUtils.makeAccessible(method);
+		return assertThrows(Throwable.class,
+				() -> ReflectionUtils.invokeMethod(method, new Controller(), new Foo("foo")));
+	}
+
+	static TestCall call(BindableService service, String fullMethodName, Object request) {
+		ServerMethodDefinition<Object, Object> definition = definition(service, fullMethodName);
+		TestCall call = new TestCall(definition.getMethodDescriptor());
+		ServerCall.Listener<Object> listener = definition.getServerCallHandler().startCall(call, new Metadata());
+		listener.onMessage(request);
+		listener.onHalfClose();
+		return call;
+	}
+
+	@SuppressWarnings("unchecked")
+	static ServerMethodDefinition<Object, Object> definition(BindableService service, String fullMethodName) {
+		return (ServerMethodDefinition<Object, Object>) service.bindService().getMethod(fullMethodName);
+	}
+
+	static class Controller {
+
+		Foo echo(Foo foo) {
+			return foo;
+		}
+
+		private Foo hidden(Foo foo) {
+			return new Foo("hidden " + foo.getName());
+		}
+
+		static Foo upper(Foo foo) {
+			return new Foo(foo.getName().toUpperCase());
+		}
+
+		Foo fail(Foo foo) {
+			throw new IllegalStateException("Planned");
+		}
+
+		Foo error(Foo foo) {
+			throw new AssertionError("Planned");
+		}
+
+		Foo checked(Foo foo) throws IOException {
+			throw new IOException("Planned");
+		}
+
+	}
+
+	static class TestCall extends ServerCall<Object, Object> {
+
+		private final MethodDescriptor<Object, Object> method;
+
+		private Object message;
+
+		private Status status;
+
+		TestCall(MethodDescriptor<Object, Object> method) {
+			this.method = method;
+		}
+
+		@Override
+		public void request(int numMessages) {
+		}
+
+		@Override
+		public void sendHeaders(Metadata headers) {
+		}
+
+		@Override
+		public void sendMessage(Object message) {
+			this.message = message;
+		}
+
+		@Override
+		public void close(Status status, Metadata trailers) {
+			this.status = status;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public Attributes getAttributes() {
+			return Attributes.EMPTY;
+		}
+
+		@Override
+		public MethodDescriptor<Object, Object> getMethodDescriptor() {
+			return this.method;
+		}
+
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+
+public class DynamicStubTests {
+
+	private DefaultDescriptorRegistry registry = new DefaultDescriptorRegistry();
+
+	private DynamicStub stub = new DynamicStub(this.registry, new NoopChannel());
+
+	@Test
+	public void testMethodHandleIsCached() {
+		this.registry.stream("Echo/Echo", Foo.class, Foo.class);
+
+		DynamicMethod<?> method = this.stub.method("Echo/Echo");
+
+		assertThat(method.getType()).isEqualTo(MethodType.SERVER_STREAMING);
+		assertThat(method.getResponseType()).isEqualTo(Foo.class);
+		assertThat(method.getRequestDescriptor().getFullName()).isEqualTo("Foo");
+		assertThat(this.stub.method("Echo/Echo")).isSameAs(method);
+		assertThat(this.stub.withDeadlineAfter(1, TimeUnit.SECONDS).method("Echo/Echo")).isSameAs(method);
+	}
+
+	@Test
+	public void testMethodHandleNotRegistered() {
+		assertThatIllegalArgumentException().isThrownBy(() -> this.stub.method("Echo/Missing"));
+	}
+
+	static class NoopChannel extends Channel {
+
+		@Override
+		public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(
+				MethodDescriptor<RequestT, ResponseT> methodDescriptor, CallOptions callOptions) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String authority() {
+			return "localhost";
+		}
+
+	}
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.Descriptors.ServiceDescriptor;
+
+public class GrpcMappingAotProcessorTests {
+
+	@Test
+	public void testNoContributionWithoutControllers() {
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerBeanDefinition("foo", new RootBeanDefinition(Foo.class));
+
+		assertThat(new GrpcMappingAotProcessor().processAheadOfTime(beanFactory)).isNull();
+	}
+
+	@Test
+	public void testContributionWithController() {
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerBeanDefinition("echo", new RootBeanDefinition(EchoController.class));
+
+		assertThat(new GrpcMappingAotProcessor().processAheadOfTime(beanFactory)).isNotNull();
+	}
+
+	@Test
+	public void testDescriptorsRoundTrip() {
+		DefaultDescriptorRegistry source = new DefaultDescriptorRegistry();
+		GrpcMappingRegistrar.service(new DynamicServiceFactory(source), EchoController.class, null).build();
+
+		FileDescriptorSet files = GrpcMappingAotProcessor.descriptors(source, Set.of("Echo"));
+		DefaultDescriptorRegistry target = new DefaultDescriptorRegistry();
+		for (FileDescriptor file : new FileDescriptorManager().convert(files)) {
+			target.register(file);
+		}
+
+		ServiceDescriptor service = target.service("Echo");
+		assertThat(service).isNotNull();
+		Descriptor input = service.findMethodByName("Echo").getInputType();
+		assertThat(input.findFieldByName("name")).isNotNull();
+		Descriptor output = service.findMethodByName("Tags").getOutputType();
+		assertThat(output.findFieldByName("values").isMapField()).isTrue();
+	}
+
+	@GrpcController("Echo")
+	static class EchoController {
+
+		@GrpcMapping
+		public Foo echo(Foo input) {
+			return input;
+		}
+
+		@GrpcMapping
+		public Tags tags(Foo input) {
+			return new Tags(Map.of("name", input.getName()));
+		}
+
+	}
+
+	record Tags(Map<String, String> values) {
+	}
+
+}
@@ -16,6 +16,7 @@
 package org.springframework.grpc.reflect;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -114,6 +115,101 @@ public class MessageConverterTests {
 		assertThat(convertedFoo.getValues().get(1)).isEqualTo("bar");
 	}
 
+	@Test
+	public void testConvertToPojoWithListOfMessages() {
+		MessageConverter converter = new MessageConverter();
+		Descriptor desc = registry.descriptor(Crate.class);
+		Crate input = new Crate();
+		input.getFoos().add(new Foo("foo"));
+		input.getFoos().add(new Foo("bar"));
+		var foo = converter.convert(input, desc);
+
+		Crate convertedFoo = converter.convert(foo, Crate.class);
+
+		assertThat(convertedFoo).isNotNull();
+		assertThat(convertedFoo.getFoos()).hasSize(2);
+		assertThat(convertedFoo.getFoos().get(0).getName()).isEqualTo("foo");
+		assertThat(convertedFoo.getFoos().get(1).getName()).isEqualTo("bar");
+	}
+
+	@Test
+	public void testPlanIsCached() {
+		MessageConverter converter = new MessageConverter();
+		Descriptor desc = registry.descriptor(Foo.class);
+
+		assertThat(converter.plan(Foo.class, desc)).isSameAs(converter.plan(Foo.class, desc));
+		assertThat(converter.plan(Foo.class, desc))
+			.isNotSameAs(converter.plan(Foo.class, HelloRequest.getDescriptor()));
+	}
+
+	@Test
+	public void testConvertWithGeneratedAccessors() {
+		MessageConverter converter = new MessageConverter();
+		converter.setGeneratedAccessors(true);
+		Foo foo = new Foo();
+		foo.setName("foo");
+		foo.setAge(30);
+		Bar bar = new Bar();
+		bar.setFoo(foo);
+
+		AbstractMessage message = converter.convert(bar, registry.descriptor(Bar.class));
+		Bar convertedBar = converter.convert(message, Bar.class);
+
+		assertThat(convertedBar.getFoo().getName()).isEqualTo("foo");
+		assertThat(convertedBar.getFoo().getAge()).isEqualTo(30);
+		assertThat(converter.plan(Foo.class, registry.descriptor(Foo.class)).fields()).isNotEmpty()
+			.allMatch(ConversionPlan.FieldPlan::generated);
+		assertThat(converter.plan(Bar.class, registry.descriptor(Bar.class)).fields()).isNotEmpty()
+			.allMatch(ConversionPlan.FieldPlan::generated);
+		converter.setGeneratedAccessors(false);
+		assertThat(converter.plan(Foo.class, registry.descriptor(Foo.class)).fields())
+			.noneMatch(ConversionPlan.FieldPlan::generated);
+	}
+
+	@Test
+	public void testArrayOfWrongTypeIsRejectedByPlan() {
+		MessageConverter converter = new MessageConverter();
+		Descriptor desc = registry.descriptor(WideCounts.class);
+
+		String message = assertThrows(IllegalArgumentException.class, () -> converter.plan(Counts.class, desc))
+			.getMessage();
+
+		assertThat(message).contains("'counts'").contains("WideCounts.counts").contains("INT64");
+		// Only exact matches, so no narrowing or widening of the elements
+		assertThrows(IllegalArgumentException.class,
+				() -> converter.plan(WideCounts.class, registry.descriptor(Counts.class)));
+		assertThrows(IllegalArgumentException.class,
+				() -> converter.plan(Floats.class, registry.descriptor(Doubles.class)));
+		assertThrows(IllegalArgumentException.class,
+				() -> converter.plan(Doubles.class, registry.descriptor(Floats.class)));
+	}
+
+	@Test
+	public void testConvertToRecord() {
+		MessageConverter converter = new MessageConverter();
+		Descriptor desc = registry.descriptor(Person.class);
+		var person = DynamicMessage.newBuilder(desc)
+			.setField(desc.findFieldByName("name"), "foo")
+			.addRepeatedField(desc.findFieldByName("tags"), "bar")
+			.build();
+
+		Person converted = converter.convert(person, Person.class);
+
+		// Missing primitive components get default values
+		assertThat(converted).isEqualTo(new Person("foo", 0, List.of("bar")));
+	}
+
+	@Test
+	public void testConvertFromRecord() {
+		MessageConverter converter = new MessageConverter();
+		Descriptor desc = registry.descriptor(Person.class);
+
+		AbstractMessage message = converter.convert(new Person("foo", 30, List.of()), desc);
+
+		assertThat(message.getField(desc.findFieldByName("name"))).isEqualTo("foo");
+		assertThat(message.getField(desc.findFieldByName("age"))).isEqualTo(30);
+	}
+
 	@Test
 	public void testConvertToVoid() {
 		MessageConverter converter = new MessageConverter();
@@ -244,6 +340,31 @@ public class MessageConverterTests {
 
 	}
 
+	static class Crate {
+
+		private List<Foo> foos = new ArrayList<>();
+
+		public List<Foo> getFoos() {
+			return foos;
+		}
+
+	}
+
+	record Counts(int[] counts) {
+	}
+
+	record WideCounts(long[] counts) {
+	}
+
+	record Floats(float[] values) {
+	}
+
+	record Doubles(double[] values) {
+	}
+
+	record Person(String name, int age, List<String> tags) {
+	}
+
 	static class Bucket {
 
 		private List<String> values = new ArrayList<>();
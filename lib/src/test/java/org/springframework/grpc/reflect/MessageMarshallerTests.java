@@ -0,0 +1,328 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.grpc.reflect.MessageConverterTests.Bar;
+import org.springframework.grpc.reflect.MessageConverterTests.Crate;
+import org.springframework.grpc.reflect.MessageConverterTests.Person;
+import org.springframework.grpc.reflect.MessageConverterTests.Spam;
+
+import com.google.protobuf.AbstractMessage;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto.Label;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto.Type;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.WireFormat;
+
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+public class MessageMarshallerTests {
+
+	private DescriptorMapper registry = DescriptorMapper.DEFAULT_INSTANCE;
+
+	private MessageConverter converter = new MessageConverter();
+
+	@Test
+	public void testSameBytesAsDynamicMessage() throws Exception {
+		Descriptor desc = registry.descriptor(Foo.class);
+		MessageMarshaller<Foo> marshaller = new MessageMarshaller<>(Foo.class, desc, converter);
+		Foo foo = new Foo("foo");
+		foo.setAge(30);
+
+		byte[] bytes = marshaller.stream(foo).readAllBytes();
+
+		assertThat(bytes).isEqualTo(converter.convert(foo, desc).toByteArray());
+	}
+
+	@Test
+	public void testDrainNested() throws Exception {
+		Descriptor desc = registry.descriptor(Bar.class);
+		MessageMarshaller<Bar> marshaller = new MessageMarshaller<>(Bar.class, desc, converter);
+		Bar bar = new Bar();
+		bar.setFoo(new Foo("foo"));
+
+		InputStream stream = marshaller.stream(bar);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		int count = ((Drainable) stream).drainTo(output);
+
+		assertThat(count).isEqualTo(output.size());
+		assertThat(output.toByteArray()).isEqualTo(converter.convert(bar, desc).toByteArray());
+	}
+
+	@Test
+	public void testRoundTripWithMapAndList() throws Exception {
+		Descriptor spamDesc = registry.descriptor(Spam.class);
+		MessageMarshaller<Spam> spams = new MessageMarshaller<>(Spam.class, spamDesc, converter);
+		Spam spam = new Spam();
+		spam.getValues().put("foo", "bar");
+		Descriptor crateDesc = registry.descriptor(Crate.class);
+		MessageMarshaller<Crate> crates = new MessageMarshaller<>(Crate.class, crateDesc, converter);
+		Crate crate = new Crate();
+		crate.getFoos().add(new Foo("foo"));
+		crate.getFoos().add(new Foo("bar"));
+
+		assertThat(spams.parse(spams.stream(spam)).getValues()).containsEntry("foo", "bar");
+		assertThat(crates.parse(crates.stream(crate)).getFoos()).extracting(Foo::getName)
+			.containsExactly("foo", "bar");
+	}
+
+	@Test
+	public void testRoundTripRecord() throws Exception {
+		Descriptor desc = registry.descriptor(Person.class);
+		MessageMarshaller<Person> marshaller = new MessageMarshaller<>(Person.class, desc, converter);
+		Person person = new Person("foo", 30, List.of("bar", "spam"));
+
+		assertThat(marshaller.parse(marshaller.stream(person))).isEqualTo(person);
+	}
+
+	@Test
+	public void testRoundTripPrimitiveArrays() throws Exception {
+		Descriptor desc = registry.descriptor(Telemetry.class);
+		MessageMarshaller<Telemetry> marshaller = new MessageMarshaller<>(Telemetry.class, desc, converter);
+		Telemetry telemetry = new Telemetry(new double[] { 1.5, -2.0 }, new long[] { 1L, Long.MAX_VALUE },
+				new int[] { -1, 0, 300 }, new boolean[] { true, false }, new byte[] { 1, 2, 3 });
+
+		byte[] bytes = marshaller.stream(telemetry).readAllBytes();
+		Telemetry result = marshaller.parse(new ByteArrayInputStream(bytes));
+
+		assertThat(bytes).isEqualTo(converter.convert(telemetry, desc).toByteArray());
+		assertThat(result.values()).containsExactly(1.5, -2.0);
+		assertThat(result.times()).containsExactly(1L, Long.MAX_VALUE);
+		assertThat(result.counts()).containsExactly(-1, 0, 300);
+		assertThat(result.flags()).containsExactly(true, false);
+		assertThat(result.data()).containsExactly(1, 2, 3);
+		assertThat(converter.convert(converter.convert(telemetry, desc), Telemetry.class).counts())
+			.containsExactly(-1, 0, 300);
+	}
+
+	@Test
+	public void testPrimitiveArraysForAllFieldTypes() throws Exception {
+		Descriptor desc = numbers();
+		MessageMarshaller<Numbers> marshaller = new MessageMarshaller<>(Numbers.class, desc, converter);
+		Numbers numbers = new Numbers(new int[] { -1, 300 }, new int[] { -1, 300 }, new int[] { -1, 300 },
+				new int[] { -1, 300 }, new int[] { -1, 300 }, new long[] { -1L, Long.MAX_VALUE },
+				new long[] { -1L, Long.MAX_VALUE }, new long[] { -1L, Long.MAX_VALUE },
+				new long[] { -1L, Long.MAX_VALUE }, new long[] { -1L, Long.MAX_VALUE }, new double[] { 1.5, -2.0 },
+				new float[] { 1.5f, -2.0f }, new boolean[] { true, false });
+
+		AbstractMessage message = converter.convert(numbers, desc);
+		byte[] bytes = marshaller.stream(numbers).readAllBytes();
+
+		assertThat(bytes).isEqualTo(message.toByteArray());
+		assertThat(converter.convert(message, Numbers.class)).usingRecursiveComparison().isEqualTo(numbers);
+		assertThat(marshaller.parse(new ByteArrayInputStream(bytes))).usingRecursiveComparison()
+			.isEqualTo(numbers);
+	}
+
+	@Test
+	public void testTruncatedPackedFieldWithHugeLength() throws Exception {
+		Descriptor desc = registry.descriptor(Telemetry.class);
+		MessageMarshaller<Telemetry> marshaller = new MessageMarshaller<>(Telemetry.class, desc, converter);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		CodedOutputStream coded = CodedOutputStream.newInstance(output);
+		// Declares about 1GB of packed longs, but only has a few bytes of them
+		coded.writeTag(desc.findFieldByName("times").getNumber(), WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		coded.writeUInt32NoTag(1 << 30);
+		coded.writeRawBytes(new byte[] { 1, 2, 3 });
+		coded.flush();
+		byte[] bytes = output.toByteArray();
+
+		StatusRuntimeException error = assertThrows(StatusRuntimeException.class,
+				() -> marshaller.parse(new ByteArrayInputStream(bytes)));
+		StatusRuntimeException known = assertThrows(StatusRuntimeException.class,
+				() -> marshaller.parse(new KnownLengthInputStream(bytes)));
+
+		assertThat(error.getStatus().getCode()).isEqualTo(Status.Code.INTERNAL);
+		assertThat(known.getStatus().getCode()).isEqualTo(Status.Code.INTERNAL);
+	}
+
+	@Test
+	public void testParseSkipsUnknownFields() throws Exception {
+		Descriptor desc = registry.descriptor(Foo.class);
+		Foo foo = new Foo("foo");
+		foo.setAge(30);
+		MessageMarshaller<Named> marshaller = new MessageMarshaller<>(Named.class, desc, converter);
+
+		Named named = marshaller.parse(new ByteArrayInputStream(converter.convert(foo, desc).toByteArray()));
+
+		assertThat(named.getName()).isEqualTo("foo");
+	}
+
+	@Test
+	public void testParseToDynamicMessage() throws Exception {
+		Descriptor desc = registry.descriptor(Foo.class);
+		MessageMarshaller<DynamicMessage> marshaller = new MessageMarshaller<>(DynamicMessage.class, desc, converter);
+		DynamicMessage message = DynamicMessage.newBuilder(desc).setField(desc.findFieldByName("name"), "foo").build();
+
+		DynamicMessage parsed = marshaller.parse(new ByteArrayInputStream(message.toByteArray()));
+
+		assertThat(parsed).isEqualTo(message);
+	}
+
+	@Test
+	public void testParseLazyView() throws Exception {
+		Descriptor desc = registry.descriptor(Foo.class);
+		Foo foo = new Foo("foo");
+		foo.setAge(30);
+		byte[] bytes = converter.convert(foo, desc).toByteArray();
+		MessageConverter lazy = new MessageConverter();
+		lazy.setLazyViews(true);
+		MessageMarshaller<FooView> marshaller = new MessageMarshaller<>(FooView.class, desc, lazy);
+
+		FooView view = marshaller.parse(new ByteArrayInputStream(bytes));
+
+		assertThat(view.getName()).isEqualTo("foo");
+		assertThat(view.getAge()).isEqualTo(30);
+		assertThat(view.describe()).isEqualTo("foo (30)");
+		assertThat(marshaller.stream(view).readAllBytes()).isEqualTo(bytes);
+	}
+
+	@Test
+	public void testParseMergesSplitNestedMessage() throws Exception {
+		Descriptor desc = registry.descriptor(Bar.class);
+		Bar first = new Bar();
+		first.setFoo(new Foo("foo"));
+		Bar second = new Bar();
+		second.setFoo(new Foo());
+		second.getFoo().setAge(30);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		// A message field that occurs twice is merged, as if the messages were concatenated
+		converter.convert(first, desc).writeTo(output);
+		converter.convert(second, desc).writeTo(output);
+		byte[] bytes = output.toByteArray();
+		MessageMarshaller<Bar> marshaller = new MessageMarshaller<>(Bar.class, desc, converter);
+		MessageConverter lazy = new MessageConverter();
+		lazy.setLazyViews(true);
+		MessageMarshaller<BarView> views = new MessageMarshaller<>(BarView.class, desc, lazy);
+
+		Bar bar = marshaller.parse(new ByteArrayInputStream(bytes));
+		BarView view = views.parse(new ByteArrayInputStream(bytes));
+
+		assertThat(bar.getFoo().getName()).isEqualTo("foo");
+		assertThat(bar.getFoo().getAge()).isEqualTo(30);
+		assertThat(view.getFoo().describe()).isEqualTo("foo (30)");
+	}
+
+	@Test
+	public void testSizeIsWireLength() throws Exception {
+		Descriptor desc = registry.descriptor(Foo.class);
+		MessageMarshaller<Foo> marshaller = new MessageMarshaller<>(Foo.class, desc, converter);
+		Foo foo = new Foo("foo");
+		foo.setAge(30);
+		int size = converter.convert(foo, desc).getSerializedSize();
+
+		Foo parsed = marshaller.parse(marshaller.stream(foo));
+
+		assertThat(marshaller.size(parsed)).isEqualTo(size);
+		assertThat(marshaller.size(null)).isZero();
+	}
+
+	@Test
+	public void testNullIsEmptyMessage() throws Exception {
+		Descriptor desc = registry.descriptor(Foo.class);
+		MessageMarshaller<Foo> marshaller = new MessageMarshaller<>(Foo.class, desc, converter);
+
+		assertThat(marshaller.stream(null).readAllBytes()).isEmpty();
+	}
+
+	private static Descriptor numbers() throws Exception {
+		String[] names = { "int32s", "uint32s", "sint32s", "fixed32s", "sfixed32s", "int64s", "uint64s", "sint64s",
+				"fixed64s", "sfixed64s", "doubles", "floats", "bools" };
+		Type[] types = { Type.TYPE_INT32, Type.TYPE_UINT32, Type.TYPE_SINT32, Type.TYPE_FIXED32, Type.TYPE_SFIXED32,
+				Type.TYPE_INT64, Type.TYPE_UINT64, Type.TYPE_SINT64, Type.TYPE_FIXED64, Type.TYPE_SFIXED64,
+				Type.TYPE_DOUBLE, Type.TYPE_FLOAT, Type.TYPE_BOOL };
+		DescriptorProto.Builder type = DescriptorProto.newBuilder().setName("Numbers");
+		for (int i = 0; i < names.length; i++) {
+			type.addField(FieldDescriptorProto.newBuilder()
+				.setName(names[i])
+				.setNumber(i + 1)
+				.setType(types[i])
+				.setLabel(Label.LABEL_REPEATED));
+		}
+		FileDescriptorProto file = FileDescriptorProto.newBuilder()
+			.setName("numbers.proto")
+			.setSyntax("proto3")
+			.addMessageType(type)
+			.build();
+		return FileDescriptor.buildFrom(file, new FileDescriptor[0]).findMessageTypeByName("Numbers");
+	}
+
+	record Numbers(int[] int32s, int[] uint32s, int[] sint32s, int[] fixed32s, int[] sfixed32s, long[] int64s,
+			long[] uint64s, long[] sint64s, long[] fixed64s, long[] sfixed64s, double[] doubles, float[] floats,
+			boolean[] bools) {
+	}
+
+	static class KnownLengthInputStream extends ByteArrayInputStream implements KnownLength {
+
+		KnownLengthInputStream(byte[] bytes) {
+			super(bytes);
+		}
+
+	}
+
+	record Telemetry(double[] values, long[] times, int[] counts, boolean[] flags, byte[] data) {
+	}
+
+	interface FooView {
+
+		String getName();
+
+		int getAge();
+
+		default String describe() {
+			return getName() + " (" + getAge() + ")";
+		}
+
+	}
+
+	interface BarView {
+
+		FooView getFoo();
+
+	}
+
+	static class Named {
+
+		private String name;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+	}
+
+}
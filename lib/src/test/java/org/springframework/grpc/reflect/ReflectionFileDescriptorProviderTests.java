@@ -49,6 +49,25 @@ public class ReflectionFileDescriptorProviderTests {
 		assertThat(method(registry, "ReflectionFileDescriptorProviderTests/Translate")).isNotNull();
 	}
 
+	@Test
+	public void testServiceFileBuiltOnceForAllMethods() throws Exception {
+		register(registry, ReflectionFileDescriptorProviderTests.class.getMethod("echo", Foo.class));
+		register(registry, ReflectionFileDescriptorProviderTests.class.getMethod("translate", Foo.class));
+		ServiceDescriptor service = registry.service("ReflectionFileDescriptorProviderTests");
+		assertThat(service.getMethods()).hasSize(2);
+		assertThat(registry.service("ReflectionFileDescriptorProviderTests")).isSameAs(service);
+	}
+
+	@Test
+	public void testTypeIndexes() throws Exception {
+		register(registry, ReflectionFileDescriptorProviderTests.class.getMethod("translate", Foo.class));
+		Descriptor type = registry.type("Bar");
+		assertThat(type).isNotNull();
+		assertThat(registry.type(Bar.class)).isSameAs(type);
+		assertThat(registry.type(Foo.class)).isSameAs(registry.type("Foo"));
+		assertThat(registry.type("Missing")).isNull();
+	}
+
 	@Test
 	@Disabled
 	public void testRegisterMethodRegistersType() throws Exception {
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2025-current the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.grpc.reflect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.grpc.reflect.CallStreamSubscriberTests.TestObserver;
+
+import io.grpc.Status;
+import reactor.core.publisher.BaseSubscriber;
+
+public class RequestStreamObserverTests {
+
+	@Test
+	public void testInboundDemandBoundedByBudget() {
+		TestObserver observer = new TestObserver();
+		RequestStreamObserver<Integer> requests = new RequestStreamObserver<>(observer, 8, 100, value -> 40);
+		assertThat(observer.autoRequest).isFalse();
+		assertThat(observer.requests).isEqualTo(8);
+
+		for (int i = 0; i < 8; i++) {
+			requests.onNext(i);
+		}
+		Consumer consumer = new Consumer();
+		requests.flux().subscribe(consumer);
+		consumer.request(6);
+		// Still 80 bytes buffered, so nothing more fits
+		assertThat(observer.requests).isEqualTo(8);
+
+		consumer.request(1);
+		assertThat(observer.requests).isEqualTo(9);
+
+		// With nothing buffered the prefetch applies
+		consumer.request(1);
+		assertThat(observer.requests).isEqualTo(16);
+	}
+
+	@Test
+	public void testHandlerCancelsMidStream() {
+		TestObserver observer = new TestObserver();
+		RequestStreamObserver<Integer> requests = new RequestStreamObserver<>(observer, 2, 0, value -> 0);
+		requests.onNext(1);
+		requests.onNext(2);
+		assertThat(observer.requests).isEqualTo(2);
+
+		List<Integer> values = new ArrayList<>();
+		requests.flux().take(1).subscribe(values::add);
+		assertThat(values).containsExactly(1);
+		assertThat(observer.error).isNull();
+		// The buffered request was discarded, so the client can send another one
+		assertThat(observer.requests).isEqualTo(4);
+
+		requests.onNext(3);
+		assertThat(Status.fromThrowable(observer.error).getCode()).isEqualTo(Status.Code.CANCELLED);
+
+		// The call is only closed once, and nothing more is requested
+		observer.error = null;
+		requests.onNext(4);
+		assertThat(observer.error).isNull();
+		assertThat(observer.requests).isEqualTo(4);
+	}
+
+	static class Consumer extends BaseSubscriber<Integer> {
+
+		@Override
+		protected void hookOnSubscribe(Subscription subscription) {
+		}
+
+	}
+
+}
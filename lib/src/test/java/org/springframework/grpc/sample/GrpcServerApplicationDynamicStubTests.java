@@ -2,11 +2,16 @@ package org.springframework.grpc.sample;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -26,6 +31,8 @@ import org.springframework.grpc.sample.FooService.Output;
 import org.springframework.test.annotation.DirtiesContext;
 
 import io.grpc.BindableService;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -88,6 +95,40 @@ public class GrpcServerApplicationDynamicStubTests {
 		assertThat(response).isNotNull();
 	}
 
+	@Test
+	void asyncUnaryFromInstance() {
+		DynamicStub stub = new DynamicStub(this.registry, this.channelFactory.createChannel("default"));
+		Foo request = new Foo();
+		request.setName("Alien");
+		assertEquals("Alien", stub.unary("FooService/Later", request, Foo.class).getName());
+		assertEquals("Alien", stub.unary("FooService/Future", request, Foo.class).getName());
+	}
+
+	@Test
+	void emptyAsyncUnaryFromInstance() {
+		DynamicStub stub = new DynamicStub(this.registry, this.channelFactory.createChannel("default"));
+		StatusRuntimeException error = assertThrows(StatusRuntimeException.class,
+				() -> stub.unary("FooService/Nothing", new Foo(), Foo.class));
+		assertEquals(Status.Code.INTERNAL, error.getStatus().getCode());
+		assertEquals("No response", error.getStatus().getDescription());
+	}
+
+	@Test
+	void clientStreamFromInstance() {
+		DynamicStub stub = new DynamicStub(this.registry, this.channelFactory.createChannel("default"));
+		Flux<Foo> requests = Flux.just("Alien", "Predator").map(Foo::new);
+		Foo response = stub.clientStream("FooService/Join", requests, Foo.class).block(Duration.ofSeconds(5));
+		assertEquals("Alien,Predator", response.getName());
+	}
+
+	@Test
+	@EnabledForJreRange(min = JRE.JAVA_21)
+	void virtualThreadsFromInstance() {
+		DynamicStub stub = new DynamicStub(this.registry, this.channelFactory.createChannel("default"));
+		Foo response = stub.unary("FooService/Blocking", new Foo(), Foo.class);
+		assertThat(response.getName()).startsWith("grpc-virtual-");
+	}
+
 	@TestConfiguration(proxyBeanMethods = false)
 	@EnableGrpcMapping
 	static class ExtraConfiguration {
@@ -121,6 +162,31 @@ class FooService {
 		return new Output();
 	}
 
+	@GrpcMapping
+	public Mono<Foo> later(Foo input) {
+		return Mono.just(input).delayElement(Duration.ofMillis(50));
+	}
+
+	@GrpcMapping
+	public CompletableFuture<Foo> future(Foo input) {
+		return CompletableFuture.supplyAsync(() -> input);
+	}
+
+	@GrpcMapping
+	public Mono<Foo> nothing(Foo input) {
+		return Mono.empty();
+	}
+
+	@GrpcMapping(virtualThreads = true)
+	public Foo blocking(Foo input) {
+		return new Foo(Thread.currentThread().getName());
+	}
+
+	@GrpcMapping
+	public Mono<Foo> join(Flux<Foo> inputs) {
+		return inputs.map(Foo::getName).collect(Collectors.joining(",")).map(Foo::new);
+	}
+
 	static class Input {
 
 	}